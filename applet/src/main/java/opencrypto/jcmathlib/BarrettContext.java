@@ -0,0 +1,59 @@
+package opencrypto.jcmathlib;
+
+import javacard.framework.ISOException;
+import javacard.framework.Util;
+
+/**
+ * Precomputed values for Barrett reduction modulo a fixed modulus.
+ *
+ * Once created, the context is associated with the modulus and reductions by the modulus (e.g., in BigNat.mod and
+ * the software path of BigNat.modMult) of values up to twice its length cost two multiplications instead of a long
+ * division.
+ */
+public class BarrettContext {
+    public final BigNat mod;
+    public final BigNat mu; // floor(2^(16 * k) / n) for n of k bytes
+    private final ResourceManager rm;
+
+    /**
+     * Creates a new context for the given modulus and associates it with the modulus. The modulus is not copied and
+     * must not be changed without calling update afterwards.
+     *
+     * @param mod modulus without leading zeroes
+     * @param allocatorType type of allocator for the precomputed values
+     * @param rm resource manager
+     */
+    public BarrettContext(BigNat mod, byte allocatorType, ResourceManager rm) {
+        if ((short) (2 * mod.length() + 2) > rm.MAX_SQ_LENGTH) {
+            ISOException.throwIt(ReturnCodes.SW_BIGNAT_MODULOTOOLARGE);
+        }
+        this.mod = mod;
+        this.rm = rm;
+        mu = new BigNat((short) (mod.length() + 1), allocatorType, rm);
+        update();
+        mod.barrett = this;
+    }
+
+    /**
+     * Recomputes the precomputed values, e.g., after the value of the modulus changed.
+     */
+    public void update() {
+        BigNat tmp = rm.BN_E;
+        BigNat quotient = rm.BN_F;
+        byte[] tmpBuffer = rm.ARRAY_A;
+        short len = (short) (2 * mod.length() + 1);
+
+        rm.lock(tmpBuffer);
+        Util.arrayFillNonAtomic(tmpBuffer, (short) 0, len, (byte) 0);
+        tmpBuffer[0] = (byte) 0x01;
+        tmp.lock();
+        tmp.fromByteArray(tmpBuffer, (short) 0, len);
+        rm.unlock(tmpBuffer);
+        quotient.lock();
+        tmp.remainderDivide(mod, quotient);
+        tmp.unlock();
+        mu.setSize((short) (mod.length() + 1));
+        mu.copy(quotient);
+        quotient.unlock();
+    }
+}
@@ -2,15 +2,14 @@ package opencrypto.jcmathlib;
 
 import javacard.framework.ISOException;
 import javacard.framework.Util;
-import javacard.security.RSAPrivateKey;
-import javacard.security.RSAPublicKey;
 import javacardx.crypto.Cipher;
-import javacard.security.KeyBuilder;
 
 /**
  * @author Vasilios Mavroudis and Petr Svenda and Antonin Dufka
  */
 public class BigNat extends BigNatInternal {
+    BarrettContext barrett; // context for reductions by this BigNat, set by BarrettContext
+    FastReductionContext fastReduction; // special form of this BigNat as a modulus, set by FastReductionContext
 
     /**
      * Construct a BigNat of a given size in bytes.
@@ -33,26 +32,46 @@ public class BigNat extends BigNatInternal {
 
     /**
      * Greatest common divisor of this BigNat with other BigNat. Result is stored into this.
+     *
+     * Uses binary GCD algorithm, which requires only shifts and subtractions.
      */
     public void gcd(BigNat other) {
-        BigNat tmp = rm.BN_A;
-        BigNat tmpOther = rm.BN_B;
+        BigNat tmpOther = rm.BN_A;
 
-        tmp.lock();
-        tmpOther.lock();
+        if (other.isZero()) {
+            return;
+        }
+        if (isZero()) {
+            clone(other);
+            return;
+        }
 
+        tmpOther.lock();
         tmpOther.clone(other);
 
-        // TODO: optimise?
-        while (!other.isZero()) {
-            tmp.clone(tmpOther);
-            mod(tmpOther);
-            tmpOther.clone(this);
-            clone(tmp);
+        // remove common factors of two
+        short shift = trailingZeros();
+        short otherShift = tmpOther.trailingZeros();
+        shiftRight(shift);
+        if (otherShift < shift) {
+            shift = otherShift;
         }
 
-        tmp.unlock();
+        // both values are odd, their difference is even
+        while (true) {
+            tmpOther.shiftRight(tmpOther.trailingZeros());
+            if (tmpOther.isLesser(this)) {
+                subtract(tmpOther);
+                shiftRight(trailingZeros());
+            } else if (isLesser(tmpOther)) {
+                tmpOther.subtract(this);
+            } else {
+                break;
+            }
+        }
         tmpOther.unlock();
+
+        shiftLeft(shift);
     }
 
     /**
@@ -75,11 +94,7 @@ public class BigNat extends BigNatInternal {
      */
     public void sq() {
         if (!OperationSupport.getInstance().RSA_SQ) {
-            BigNat tmp = rm.BN_E;
-            tmp.lock();
-            tmp.setSize(length());
-            tmp.copy(this);
-            super.mult(tmp);
+            super.sq();
             return;
         }
         if ((short) (rm.MAX_SQ_LENGTH - 1) < (short) (2 * length())) {
@@ -149,11 +164,62 @@ public class BigNat extends BigNatInternal {
         result.unlock();
     }
 
+    /**
+     * Squares this using software multiplications even if RSA_SQ is set.
+     */
+    void swSq() {
+        super.sq();
+    }
+
+    /**
+     * Computes this * other using software multiplications even if RSA_SQ is set.
+     */
+    void swMult(BigNat other) {
+        super.mult(other);
+    }
+
     /**
      * Computes modulo and stores the result in this.
      */
     public void mod(BigNat mod) {
-        remainderDivide(mod, null);
+        if (mod.fastReduction != null) {
+            mod(mod, mod.fastReduction);
+        } else {
+            mod(mod, mod.barrett);
+        }
+    }
+
+    /**
+     * Computes modulo of a special form and stores the result in this.
+     *
+     * @param mod modulus
+     * @param ctx fast reduction context of mod
+     */
+    public void mod(BigNat mod, FastReductionContext ctx) {
+        switch (ctx.form) {
+            case FastReductionContext.FORM_P256:
+                solinasReduce(mod, FastReductionContext.P256_COEFFICIENTS);
+                break;
+            case FastReductionContext.FORM_PSEUDO_MERSENNE:
+                foldReduce(mod, ctx.c);
+                break;
+            default:
+                mod(mod, mod.barrett);
+        }
+    }
+
+    /**
+     * Computes modulo using a precomputed Barrett context and stores the result in this.
+     *
+     * @param mod modulus
+     * @param ctx Barrett context of mod or null
+     */
+    public void mod(BigNat mod, BarrettContext ctx) {
+        if (ctx != null) {
+            barrettReduce(mod, ctx.mu);
+        } else {
+            remainderDivide(mod, null);
+        }
     }
 
     /**
@@ -230,11 +296,14 @@ public class BigNat extends BigNatInternal {
     }
 
     /**
-     * Computes (this ^ exp % mod) using RSA algorithm and store results into this.
+     * Computes (this ^ exp % mod) using RSA algorithm and store results into this. If RSA_EXP is not supported, the
+     * exponentiation is computed in software.
      */
     public void modExp(BigNat exp, BigNat mod) {
-        if (!OperationSupport.getInstance().RSA_EXP)
-            ISOException.throwIt(ReturnCodes.SW_OPERATION_NOT_SUPPORTED);
+        if (!OperationSupport.getInstance().RSA_EXP) {
+            modExpWindow(exp, mod);
+            return;
+        }
         if (OperationSupport.getInstance().RSA_CHECK_EXP_ONE && exp.isOne())
             return;
         if (!OperationSupport.getInstance().RSA_SQ && exp.isTwo()) {
@@ -249,61 +318,20 @@ public class BigNat extends BigNatInternal {
         tmpMod.lock();
         tmpMod.setSize(rm.MAX_EXP_LENGTH);
 
-        if (OperationSupport.getInstance().RSA_PUB) {
-            // Verify if pre-allocated engine match the required values
-            if (rm.expPub.getSize() < (short) (mod.length() * 8) || rm.expPub.getSize() < (short) (length() * 8)) {
-                ISOException.throwIt(ReturnCodes.SW_BIGNAT_MODULOTOOLARGE);
-            }
-            if (OperationSupport.getInstance().RSA_KEY_REFRESH) {
-                // Simulator fails when reusing the original object
-                rm.expPub = (RSAPublicKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PUBLIC, rm.MAX_EXP_BIT_LENGTH, false);
-            }
-            rm.lock(tmpBuffer);
-            short len = exp.copyToByteArray(tmpBuffer, (short) 0);
-            rm.expPub.setExponent(tmpBuffer, (short) 0, len);
-            if (OperationSupport.getInstance().RSA_RESIZE_MOD) {
-                if (OperationSupport.getInstance().RSA_APPEND_MOD) {
-                    mod.appendZeros(rm.MAX_EXP_LENGTH, tmpBuffer, (short) 0);
-                } else {
-                    mod.prependZeros(rm.MAX_EXP_LENGTH, tmpBuffer, (short) 0);
-                }
-                rm.expPub.setModulus(tmpBuffer, (short) 0, rm.MAX_EXP_LENGTH);
-                modLength = rm.MAX_EXP_LENGTH;
-            } else {
-                modLength = mod.copyToByteArray(tmpBuffer, (short) 0);
-                rm.expPub.setModulus(tmpBuffer, (short) 0, modLength);
-            }
-            rm.expCiph.init(rm.expPub, Cipher.MODE_DECRYPT);
+        // Verify if pre-allocated engine match the required values
+        if (rm.MAX_EXP_LENGTH < mod.length() || rm.MAX_EXP_LENGTH < length()) {
+            ISOException.throwIt(ReturnCodes.SW_BIGNAT_MODULOTOOLARGE);
+        }
+        rm.lock(tmpBuffer);
+        Cipher expCiph = rm.getExpCipher(exp, mod, tmpBuffer);
+        if (OperationSupport.getInstance().RSA_RESIZE_MOD) {
+            modLength = rm.MAX_EXP_LENGTH;
         } else {
-            // Verify if pre-allocated engine match the required values
-            if (rm.expPriv.getSize() < (short) (mod.length() * 8) || rm.expPriv.getSize() < (short) (length() * 8)) {
-                ISOException.throwIt(ReturnCodes.SW_BIGNAT_MODULOTOOLARGE);
-            }
-            if (OperationSupport.getInstance().RSA_KEY_REFRESH) {
-                // Simulator fails when reusing the original object
-                rm.expPriv = (RSAPrivateKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PRIVATE, rm.MAX_EXP_BIT_LENGTH, false);
-            }
-            rm.lock(tmpBuffer);
-            short len = exp.copyToByteArray(tmpBuffer, (short) 0);
-            rm.expPriv.setExponent(tmpBuffer, (short) 0, len);
-            if (OperationSupport.getInstance().RSA_RESIZE_MOD) {
-                if (OperationSupport.getInstance().RSA_APPEND_MOD) {
-                    mod.appendZeros(rm.MAX_EXP_LENGTH, tmpBuffer, (short) 0);
-                } else {
-                    mod.prependZeros(rm.MAX_EXP_LENGTH, tmpBuffer, (short) 0);
-
-                }
-                rm.expPriv.setModulus(tmpBuffer, (short) 0, rm.MAX_EXP_LENGTH);
-                modLength = rm.MAX_EXP_LENGTH;
-            } else {
-                modLength = mod.copyToByteArray(tmpBuffer, (short) 0);
-                rm.expPriv.setModulus(tmpBuffer, (short) 0, modLength);
-            }
-            rm.expCiph.init(rm.expPriv, Cipher.MODE_DECRYPT);
+            modLength = mod.length();
         }
 
         prependZeros(modLength, tmpBuffer, (short) 0);
-        short len = rm.expCiph.doFinal(tmpBuffer, (short) 0, modLength, tmpBuffer, (short) 0);
+        short len = expCiph.doFinal(tmpBuffer, (short) 0, modLength, tmpBuffer, (short) 0);
 
         if (len != rm.MAX_EXP_LENGTH) {
             if (OperationSupport.getInstance().RSA_PREPEND_ZEROS) {
@@ -327,10 +355,141 @@ public class BigNat extends BigNatInternal {
         tmpMod.unlock();
     }
 
+    /**
+     * Computes (this ^ exp % mod) in software using left-to-right sliding window exponentiation and stores the result
+     * into this.
+     *
+     * The odd powers this^1, this^3, ..., this^(2^w - 1) are precomputed in BN_EXP_TABLE, where the window width w is
+     * chosen by the exponent length up to EXP_WINDOW_BITS. Each window then costs w squarings and one multiplication.
+     * Uses only BN_H, BN_EXP_TABLE and ARRAY_B besides the temporaries of software mult, sq and mod, so it can be
+     * called while BN_A to BN_E are locked (e.g., from modSqrt).
+     *
+     * @param exp exponent
+     * @param mod modulus
+     */
+    private void modExpWindow(BigNat exp, BigNat mod) {
+        rm.allocateExpHelpers();
+        BigNat result = rm.BN_H;
+        BigNat[] table = rm.BN_EXP_TABLE;
+        byte[] expBuffer = rm.ARRAY_B;
+        short modLength = mod.length();
+
+        rm.lock(expBuffer);
+        short bits = (short) (8 * exp.copyToByteArray(expBuffer, (short) 0));
+        short i = 0;
+        while (i < bits && !isBitSet(expBuffer, i)) {
+            ++i;
+        }
+
+        // Longer windows pay off only for longer exponents
+        short window = 1;
+        short threshold = 8;
+        while (window < ResourceManager.EXP_WINDOW_BITS && (short) (bits - i) > threshold) {
+            ++window;
+            threshold = (short) (threshold << 2);
+        }
+        short tableSize = (short) (1 << (short) (window - 1));
+
+        // 1. Precompute table[k] = this^(2 * k + 1)
+        result.lock();
+        result.clone(this);
+        result.mod(mod);
+        result.resize(modLength);
+        for (short k = 0; k < tableSize; k++) {
+            table[k].lock();
+        }
+        table[0].setSize(modLength);
+        table[0].copy(result);
+        if (tableSize > 1) {
+            // The last entry holds this^2 until it is overwritten by the highest odd power
+            BigNat square = table[(short) (tableSize - 1)];
+            result.swSq();
+            result.mod(mod);
+            result.resize(modLength);
+            square.setSize(modLength);
+            square.copy(result);
+            for (short k = 1; k < tableSize; k++) {
+                result.clone(table[(short) (k - 1)]);
+                result.swMult(square);
+                result.mod(mod);
+                result.resize(modLength);
+                table[k].setSize(modLength);
+                table[k].copy(result);
+            }
+        }
+
+        // 2. Process the exponent bits from the most significant one, each window starts and ends with a one bit
+        result.setSize(modLength);
+        result.setValue((byte) 1);
+        boolean started = false;
+        while (i < bits) {
+            if (!isBitSet(expBuffer, i)) {
+                result.swSq();
+                result.mod(mod);
+                result.resize(modLength);
+                ++i;
+                continue;
+            }
+            short end = (short) (i + window);
+            if (end > bits) {
+                end = bits;
+            }
+            while (!isBitSet(expBuffer, (short) (end - 1))) {
+                --end;
+            }
+            short windowValue = 0;
+            for (; i < end; i++) {
+                windowValue = (short) (windowValue << 1);
+                if (isBitSet(expBuffer, i)) {
+                    windowValue |= 1;
+                }
+                if (started) {
+                    result.swSq();
+                    result.mod(mod);
+                    result.resize(modLength);
+                }
+            }
+            if (started) {
+                result.swMult(table[(short) (windowValue >> 1)]);
+                result.mod(mod);
+                result.resize(modLength);
+            } else {
+                result.copy(table[(short) (windowValue >> 1)]);
+                started = true;
+            }
+        }
+        rm.unlock(expBuffer);
+
+        for (short k = 0; k < tableSize; k++) {
+            table[k].unlock();
+        }
+        setSize(modLength);
+        copy(result);
+        result.unlock();
+    }
+
+    /**
+     * Tests a bit of a big-endian value in a byte array.
+     *
+     * @param buffer byte array with the value
+     * @param bit index of the bit counted from the most significant one
+     * @return true if the bit is set
+     */
+    private static boolean isBitSet(byte[] buffer, short bit) {
+        return ((buffer[(short) (bit >> 3)] >> (short) (7 - (bit & 7))) & 1) != 0;
+    }
+
     /**
      * Computes modular inversion. The result is stored into this.
+     *
+     * The inversion is computed as this^(mod - 2) using RSA engine for prime mod, or using binary extended Euclidean
+     * algorithm for odd mod if RSA_INV or RSA_EXP is not supported.
      */
     public void modInv(BigNat mod) {
+        if (mod.isOdd() && (!OperationSupport.getInstance().RSA_INV || !OperationSupport.getInstance().RSA_EXP)) {
+            modInvBinary(mod);
+            return;
+        }
         BigNat tmp = rm.BN_B;
         tmp.lock();
         tmp.clone(mod);
@@ -341,6 +500,123 @@ public class BigNat extends BigNatInternal {
         tmp.unlock();
     }
 
+    /**
+     * Computes modular inversions of count values using Montgomery's trick, i.e., a single modInv and 3 * (count - 1)
+     * modMults. The results are stored into the values. Zero values are kept, all other values must be invertible.
+     *
+     * @param values values to invert
+     * @param count number of values to invert
+     * @param products array of at least count BigNats of mod length used to store the partial products
+     * @param mod modulus
+     */
+    public static void modInvBatch(BigNat[] values, short count, BigNat[] products, BigNat mod) {
+        if (count <= 0) {
+            return;
+        }
+
+        // products[i] = values[0] * ... * values[i], skipping zeroes
+        for (short i = 0; i < count; i++) {
+            BigNat product = products[i];
+            product.setSize(mod.length());
+            if (i == 0) {
+                product.setValue((byte) 1);
+            } else {
+                product.copy(products[(short) (i - 1)]);
+            }
+            if (!values[i].isZero()) {
+                product.modMult(values[i], mod);
+            }
+        }
+
+        BigNat inverse = products[(short) (count - 1)];
+        inverse.modInv(mod);
+
+        // inverse = (values[0] * ... * values[i])^(-1) at the start of each step
+        for (short i = (short) (count - 1); i > 0; i--) {
+            if (values[i].isZero()) {
+                continue;
+            }
+            BigNat result = products[(short) (i - 1)];
+            result.modMult(inverse, mod);
+            inverse.modMult(values[i], mod);
+            values[i].setSize(mod.length());
+            values[i].copy(result);
+        }
+        if (!values[0].isZero()) {
+            values[0].setSize(mod.length());
+            values[0].copy(inverse);
+        }
+    }
+
+    /**
+     * Computes modular inversion using binary extended Euclidean algorithm. The result is stored into this.
+     *
+     * Maintains u = x1 * this and v = x2 * this (mod mod) while halving and subtracting u and v until one of them is
+     * one. If this has no inverse, the result is zero.
+     *
+     * @param mod odd modulus
+     */
+    private void modInvBinary(BigNat mod) {
+        BigNat u = rm.BN_A;
+        BigNat v = rm.BN_B;
+        BigNat x1 = rm.BN_C;
+        BigNat x2 = rm.BN_D;
+
+        u.lock();
+        u.clone(this);
+        u.mod(mod);
+        v.lock();
+        v.clone(mod);
+        x1.lock();
+        x1.setSize(mod.length());
+        x1.setValue((byte) 1);
+        x2.lock();
+        x2.setSize(mod.length());
+        x2.zero();
+
+        while (!u.isZero() && !u.isOne() && !v.isOne()) {
+            while (!u.isOdd()) {
+                u.shiftRight((short) 1);
+                x1.halve(mod);
+            }
+            while (!v.isOdd()) {
+                v.shiftRight((short) 1);
+                x2.halve(mod);
+            }
+            if (u.isLesser(v)) {
+                v.subtract(u);
+                x2.modSub(x1, mod);
+            } else {
+                u.subtract(v);
+                x1.modSub(x2, mod);
+            }
+        }
+
+        setSize(mod.length());
+        if (u.isOne()) {
+            copy(x1);
+        } else if (v.isOne()) {
+            copy(x2);
+        } else {
+            zero();
+        }
+        u.unlock();
+        v.unlock();
+        x1.unlock();
+        x2.unlock();
+    }
+
+    /**
+     * Computes this / 2 modulo odd mod. This must be lesser than mod.
+     */
+    private void halve(BigNat mod) {
+        short carry = 0;
+        if (isOdd()) {
+            carry = add(mod);
+        }
+        shiftRight((short) 1, carry);
+    }
+
     /**
      * Multiplication of this and other modulo mod. The result is stored to this.
      */
@@ -356,7 +632,11 @@ public class BigNat extends BigNatInternal {
         result.lock();
         if (!OperationSupport.getInstance().RSA_SQ || OperationSupport.getInstance().RSA_EXTRA_MOD) {
             result.clone(this);
-            result.mult(other);
+            if (other == this) {
+                result.sq();
+            } else {
+                result.mult(other);
+            }
             result.mod(mod);
         } else {
             result.setSize((short) (mod.length() + 1));
@@ -404,27 +684,288 @@ public class BigNat extends BigNatInternal {
         }
     }
 
+    /**
+     * Computes this * other + addend modulo mod with a single reduction. The result is stored to this.
+     *
+     * This, other and addend must be lesser than mod. Falls back to modMult and modAdd if the multiplication is
+     * done by RSA squaring.
+     */
+    public void modMultAdd(BigNat other, BigNat addend, BigNat mod) {
+        if (OperationSupport.getInstance().RSA_SQ && !OperationSupport.getInstance().RSA_EXTRA_MOD) {
+            if (other == this) {
+                modSq(mod);
+            } else {
+                modMult(other, mod);
+            }
+            modAdd(addend, mod);
+            return;
+        }
+
+        BigNat result = rm.BN_E;
+        result.lock();
+        modMultUnreduced(other, mod, result);
+        result.add(addend);
+        result.mod(mod);
+        setSize(mod.length());
+        copy(result);
+        result.unlock();
+    }
+
+    /**
+     * Computes this * other - subtrahend modulo mod with a single reduction. The result is stored to this.
+     *
+     * This, other and subtrahend must be lesser than mod. Falls back to modMult and modSub if the multiplication is
+     * done by RSA squaring.
+     */
+    public void modMultSub(BigNat other, BigNat subtrahend, BigNat mod) {
+        if (OperationSupport.getInstance().RSA_SQ && !OperationSupport.getInstance().RSA_EXTRA_MOD) {
+            if (other == this) {
+                modSq(mod);
+            } else {
+                modMult(other, mod);
+            }
+            modSub(subtrahend, mod);
+            return;
+        }
+
+        BigNat result = rm.BN_E;
+        result.lock();
+        modMultUnreduced(other, mod, result);
+        result.add(mod);
+        result.subtract(subtrahend);
+        result.mod(mod);
+        setSize(mod.length());
+        copy(result);
+        result.unlock();
+    }
+
+    /**
+     * Stores this * other into result resized to twice the length of mod, so that a value lesser than mod can be
+     * added without a carry.
+     */
+    private void modMultUnreduced(BigNat other, BigNat mod, BigNat result) {
+        result.clone(this);
+        if (other == this) {
+            result.sq();
+        } else {
+            result.mult(other);
+        }
+        result.shrink();
+        result.resize((short) (2 * mod.length()));
+    }
+
+    /**
+     * Converts this BigNat into Montgomery form. This must be lesser than the modulus of the context.
+     */
+    public void toMont(MontgomeryContext ctx) {
+        montMult(ctx.r2, ctx.mod, ctx.nPrime);
+    }
+
+    /**
+     * Converts this BigNat from Montgomery form.
+     */
+    public void fromMont(MontgomeryContext ctx) {
+        BigNat tmp = rm.BN_G;
+        tmp.lock();
+        tmp.clone(this);
+        tmp.montReduce(ctx.mod, ctx.nPrime);
+        setSize(ctx.mod.length());
+        copy(tmp);
+        tmp.unlock();
+    }
+
+    /**
+     * Montgomery multiplication of this and other, both in Montgomery form. The result is stored to this.
+     */
+    public void montMul(BigNat other, MontgomeryContext ctx) {
+        montMult(other, ctx.mod, ctx.nPrime);
+    }
+
+    /**
+     * Montgomery square of this in Montgomery form. The result is stored to this.
+     */
+    public void montSq(MontgomeryContext ctx) {
+        montSq(ctx.mod, ctx.nPrime);
+    }
+
     /**
      * Checks whether this BigNat is a quadratic residue modulo p.
-     * @param p modulo
+     * @param p prime modulo
      */
     public boolean isQuadraticResidue(BigNat p) {
-        BigNat tmp = rm.BN_A;
+        return jacobiSymbol(p) == (byte) 1;
+    }
+
+    /**
+     * Computes the Jacobi symbol (this / n), i.e., the Legendre symbol for prime n, using binary algorithm with shifts
+     * and subtractions only.
+     *
+     * @param n odd modulus
+     * @return 1, -1 or 0 if this and n are not coprime
+     */
+    public byte jacobiSymbol(BigNat n) {
+        BigNat x = rm.BN_A;
+        BigNat y = rm.BN_B;
+
+        x.lock();
+        x.clone(this);
+        x.mod(n);
+        x.resize(n.length());
+        y.lock();
+        y.clone(n);
+
+        byte result = 1;
+        while (!x.isZero()) {
+            // (2 / y) = -1 iff y = 3, 5 mod 8
+            short shift = x.trailingZeros();
+            x.shiftRight(shift);
+            byte yMod8 = (byte) (y.lowestByte() & 0x07);
+            if ((byte) (shift & 1) != (byte) 0 && (yMod8 == (byte) 3 || yMod8 == (byte) 5)) {
+                result = (byte) -result;
+            }
+            // Quadratic reciprocity for odd x, y
+            if (x.isLesser(y)) {
+                BigNat tmp = x;
+                x = y;
+                y = tmp;
+                if ((byte) (x.lowestByte() & y.lowestByte() & 0x03) == (byte) 0x03) {
+                    result = (byte) -result;
+                }
+            }
+            x.subtract(y);
+        }
+        if (!y.isOne()) {
+            result = 0;
+        }
+        rm.BN_A.unlock();
+        rm.BN_B.unlock();
+        return result;
+    }
+
+    /**
+     * Computes square root of this modulo provided BigNat which MUST be prime. The result (one of the two roots) is
+     * stored to this.
+     *
+     * @param p prime modulus
+     * @return true if this is a quadratic residue modulo p, false otherwise (the value of this is undefined then)
+     */
+    public boolean modSqrt(BigNat p) {
+        return modSqrt(p, null);
+    }
+
+    /**
+     * Computes square root of this modulo provided BigNat which MUST be prime. The result (one of the two roots) is
+     * stored to this.
+     *
+     * Uses a single exponentiation for p = 3 mod 4 and Atkin's method for p = 5 mod 8, Tonelli Shanks Algorithm
+     * otherwise. If ctx is not null, the search for further candidates of Tonelli Shanks Algorithm is computed in
+     * Montgomery form. The check whether this is a quadratic residue is a byproduct of the computation.
+     *
+     * @param p prime modulus
+     * @param ctx Montgomery context for p or null
+     * @return true if this is a quadratic residue modulo p, false otherwise (the value of this is undefined then)
+     */
+    public boolean modSqrt(BigNat p, MontgomeryContext ctx) {
+        mod(p);
+        resize(p.length());
+        if (isZero()) {
+            return true;
+        }
+        byte low = p.lowestByte();
+        if ((byte) (low & 0x03) == (byte) 0x03) {
+            return modSqrt34(p);
+        }
+        if ((byte) (low & 0x07) == (byte) 0x05) {
+            return modSqrt58(p);
+        }
+        return modSqrtTonelliShanks(p, ctx);
+    }
+
+    /**
+     * Computes square root modulo prime p = 3 mod 4 as this^((p + 1) / 4). The result is stored to this.
+     *
+     * @param p prime modulus
+     * @return true if this is a quadratic residue modulo p
+     */
+    private boolean modSqrt34(BigNat p) {
+        BigNat a = rm.BN_A;
         BigNat exp = rm.BN_B;
-        tmp.clone(this);
+
+        a.lock();
+        a.setSize(p.length());
+        a.copy(this);
+
+        // (p + 1) / 4 = floor(p / 4) + 1 for p = 3 mod 4
+        exp.lock();
         exp.clone(p);
-        exp.decrement();
-        exp.shiftRight((short) 1);
-        tmp.modExp(exp, p);
-        return tmp.isOne();
+        exp.shiftRight((short) 2);
+        exp.increment();
+        modExp(exp, p);
+
+        // this^2 = a * (a / p) is a iff a is a quadratic residue
+        exp.clone(this);
+        exp.modSq(p);
+        boolean residue = exp.equals(a);
+        exp.unlock();
+        a.unlock();
+        return residue;
+    }
+
+    /**
+     * Computes square root modulo prime p = 5 mod 8 using Atkin's method. The result is stored to this.
+     *
+     * With v = (2 * this)^((p - 5) / 8) and i = 2 * this * v^2 = (2 * this)^((p - 1) / 4), the root is
+     * this * v * (i - 1). As 2 is not a quadratic residue modulo p, i^2 = -1 iff this is a quadratic residue.
+     *
+     * @param p prime modulus
+     * @return true if this is a quadratic residue modulo p
+     */
+    private boolean modSqrt58(BigNat p) {
+        BigNat v = rm.BN_A;
+        BigNat i = rm.BN_B;
+        BigNat a2 = rm.BN_C;
+
+        a2.lock();
+        a2.setSize(p.length());
+        a2.copy(this);
+        a2.modAdd(this, p);
+
+        // (p - 5) / 8 = floor(p / 8) for p = 5 mod 8
+        i.lock();
+        i.clone(p);
+        i.shiftRight((short) 3);
+        v.lock();
+        v.clone(a2);
+        v.modExp(i, p);
+
+        i.clone(v);
+        i.modSq(p);
+        i.modMult(a2, p);
+
+        // i is one of 1, -1 for a quadratic non-residue
+        a2.clone(i);
+        a2.increment();
+        boolean residue = !i.isOne() && !a2.equals(p);
+        a2.unlock();
+
+        i.decrement();
+        modMult(v, p);
+        modMult(i, p);
+        v.unlock();
+        i.unlock();
+        return residue;
     }
 
     /**
-     * Computes square root of provided BigNat which MUST be prime using Tonelli Shanks Algorithm. The result (one of
-     * the two roots) is stored to this.
+     * Computes square root using Tonelli Shanks Algorithm. The result is stored to this. This must be reduced modulo p
+     * and non-zero.
+     *
+     * @param p prime modulus
+     * @param ctx Montgomery context for p or null
+     * @return true if this is a quadratic residue modulo p
      */
-    public void modSqrt(BigNat p) {
-        BigNat exp = rm.BN_G;
+    private boolean modSqrtTonelliShanks(BigNat p, MontgomeryContext ctx) {
+        BigNat exp = rm.BN_E;
         BigNat p1 = rm.BN_B;
         BigNat q = rm.BN_C;
         BigNat tmp = rm.BN_D;
@@ -440,34 +981,42 @@ public class BigNat extends BigNatInternal {
         q.lock();
         q.clone(p1);
 
-        short s = 0;
-        while (!q.isOdd()) {
-            ++s;
-            q.shiftRight((short) 1);
-        }
-
-        // 2. Find the first quadratic non-residue z by brute-force search
-        exp.lock();
-        exp.clone(p1);
-        exp.shiftRight((short) 1);
-
+        short s = p1.trailingZeros();
+        q.shiftRight(s);
 
+        // 2. Find the first quadratic non-residue z by brute-force search unless it is cached for p
         z.lock();
         z.setSize(p.length());
-        z.setValue((byte) 1);
-        tmp.lock();
-        tmp.setSize(p.length());
-        tmp.setValue((byte) 1);
+        short zValue = rm.getNonResidue(p);
+        if (zValue != 0) {
+            z.setValue(zValue);
+        } else {
+            exp.lock();
+            exp.clone(p1);
+            exp.shiftRight((short) 1);
 
-        while (!tmp.equals(p1)) {
-            z.increment();
-            tmp.copy(z);
-            tmp.modExp(exp, p); // Euler's criterion
+            z.setValue((byte) 1);
+            zValue = 1;
+            tmp.lock();
+            tmp.setSize(p.length());
+            tmp.setValue((byte) 1);
+
+            while (!tmp.equals(p1)) {
+                z.increment();
+                ++zValue;
+                tmp.copy(z);
+                tmp.modExp(exp, p); // Euler's criterion
+            }
+            tmp.unlock();
+            exp.unlock();
+            if (zValue > 0) {
+                rm.setNonResidue(p, zValue);
+            }
         }
         p1.unlock();
-        tmp.unlock();
 
         // 3. Compute the first candidate
+        exp.lock();
         exp.clone(q);
         exp.increment();
         exp.shiftRight((short) 1);
@@ -476,16 +1025,6 @@ public class BigNat extends BigNatInternal {
         t.clone(this);
         t.modExp(q, p);
 
-        if (t.isZero()) {
-            z.unlock();
-            t.unlock();
-            exp.unlock();
-            q.unlock();
-            zero();
-            return;
-        }
-
-        mod(p);
         modExp(exp, p);
         exp.unlock();
 
@@ -493,13 +1032,21 @@ public class BigNat extends BigNatInternal {
             z.unlock();
             t.unlock();
             q.unlock();
-            return;
+            return true;
         }
 
         // 4. Search for further candidates
         z.modExp(q, p);
         q.unlock();
 
+        boolean residue;
+        if (ctx != null) {
+            residue = modSqrtMont(z, t, s, ctx);
+            z.unlock();
+            t.unlock();
+            return residue;
+        }
+
         while(true) {
             tmp.lock();
             tmp.clone(t);
@@ -512,6 +1059,12 @@ public class BigNat extends BigNatInternal {
 
             tmp.unlock();
 
+            // t^(2^(s - 1)) = -1 for a quadratic non-residue
+            if (i >= s) {
+                residue = false;
+                break;
+            }
+
             b.lock();
             b.clone(z);
             s -= i;
@@ -520,10 +1073,7 @@ public class BigNat extends BigNatInternal {
             tmp.lock();
             tmp.setSize((short) 1);
             tmp.setValue((byte) 1);
-            while(s != 0) {
-                tmp.shiftLeft((short) 1);
-                --s;
-            }
+            tmp.shiftLeft(s);
             b.modExp(tmp, p);
             tmp.unlock();
             s = i;
@@ -533,15 +1083,74 @@ public class BigNat extends BigNatInternal {
             modMult(b, p);
             b.unlock();
 
-            if(t.isZero()) {
-                zero();
-                break;
-            }
             if(t.isOne()) {
+                residue = true;
                 break;
             }
         }
         z.unlock();
         t.unlock();
+        return residue;
+    }
+
+    /**
+     * Search for further candidates of Tonelli Shanks Algorithm in Montgomery form.
+     *
+     * @param z the power of quadratic non-residue
+     * @param t the current t
+     * @param s the current s
+     * @param ctx Montgomery context of the modulus
+     * @return true if this is a quadratic residue modulo the modulus
+     */
+    private boolean modSqrtMont(BigNat z, BigNat t, short s, MontgomeryContext ctx) {
+        BigNat tmp = rm.BN_D;
+        BigNat b = rm.BN_C;
+
+        z.toMont(ctx);
+        t.toMont(ctx);
+        toMont(ctx);
+
+        boolean residue;
+        while (true) {
+            tmp.lock();
+            tmp.clone(t);
+            short i = 0;
+
+            do {
+                tmp.montSq(ctx);
+                ++i;
+            } while (!tmp.equals(ctx.one));
+
+            tmp.unlock();
+
+            // t^(2^(s - 1)) = -1 for a quadratic non-residue
+            if (i >= s) {
+                residue = false;
+                break;
+            }
+
+            // b = z^(2^(s - i - 1))
+            b.lock();
+            b.clone(z);
+            s -= i;
+            --s;
+            while (s != 0) {
+                b.montSq(ctx);
+                --s;
+            }
+            s = i;
+            z.clone(b);
+            z.montSq(ctx);
+            t.montMul(z, ctx);
+            montMul(b, ctx);
+            b.unlock();
+
+            if (t.equals(ctx.one)) {
+                residue = true;
+                break;
+            }
+        }
+        fromMont(ctx);
+        return residue;
     }
 }
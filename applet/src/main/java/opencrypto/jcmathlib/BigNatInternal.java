@@ -269,6 +269,13 @@ public class BigNatInternal {
         return (byte) (value[(short) (value.length - 1)] & (byte) 1) != (byte) 0;
     }
 
+    /**
+     * Returns the least significant byte of this BigNat, e.g., to compute this modulo a small power of two.
+     */
+    protected byte lowestByte() {
+        return value[(short) (value.length - 1)];
+    }
+
     /**
      * Returns true if this BigNat is lesser than the other.
      */
@@ -384,16 +391,42 @@ public class BigNatInternal {
         return add(other, (short) 0, (short) 1);
     }
 
+    /**
+     * Computes other * multiplier and adds it to this. Outputs carry bit.
+     * Multiplier must be in range [0; 2^8 - 1].
+     *
+     * @param other BigNat to add
+     * @param multiplier multiplier of other
+     * @return true if carry occurs, false otherwise
+     */
+    public byte add(BigNatInternal other, short multiplier) {
+        return add(other, (short) 0, multiplier);
+    }
+
     /**
      * Computes other * multiplier, shifts the results by shift and adds it to this.
      * Multiplier must be in range [0; 2^8 - 1].
      * This must be large enough to fit the results.
      */
     private byte add(BigNatInternal other, short shift, short multiplier) {
+        return add(other, (short) 0, other.size, shift, multiplier);
+    }
+
+    /**
+     * Computes a digit range of other multiplied by multiplier, shifts the results by shift and adds it to this.
+     * The range starts otherFrom digits from the least significant digit of other and is otherLen digits long.
+     * Multiplier must be in range [0; 2^8 - 1].
+     * This must be large enough to fit the results.
+     */
+    private byte add(BigNatInternal other, short otherFrom, short otherLen, short shift, short multiplier) {
         short acc = 0;
-        short i = (short) (other.size - 1 + other.offset);
+        short i = (short) (other.value.length - 1 - otherFrom);
+        short otherEnd = (short) (i - otherLen);
+        if (otherEnd < (short) (other.offset - 1)) {
+            otherEnd = (short) (other.offset - 1);
+        }
         short j = (short) (size - 1 - shift + offset);
-        for (; i >= other.offset && j >= offset; i--, j--) {
+        for (; i > otherEnd && j >= offset; i--, j--) {
             acc += (short) ((short) (value[j] & DIGIT_MASK) + (short) (multiplier * (other.value[i] & DIGIT_MASK)));
 
             value[j] = (byte) (acc & DIGIT_MASK);
@@ -422,8 +455,10 @@ public class BigNatInternal {
     /**
      * Computes other * multiplier, shifts the results by shift and subtract it from this.
      * Multiplier must be in range [0; 2^8 - 1].
+     *
+     * @return non-zero if the result underflows, zero otherwise
      */
-    private void subtract(BigNatInternal other, short shift, short multiplier) {
+    private short subtract(BigNatInternal other, short shift, short multiplier) {
         short acc = 0;
         short i = (short) (size - 1 - shift + offset);
         short j = (short) (other.size - 1 + other.offset);
@@ -447,12 +482,25 @@ public class BigNatInternal {
                 acc++;
             }
         }
+        return acc;
     }
 
     /**
      * Multiplies this and other using software multiplications and stores results into this.
+     *
+     * Operands of at least OperationSupport.KARATSUBA_MIN_LENGTH bytes are multiplied using a single level
+     * of Karatsuba multiplication, smaller operands using schoolbook multiplication.
      */
     public void mult(BigNatInternal other) {
+        short half = (short) (size > other.size ? size : other.size);
+        half = (short) ((short) (half + 1) >> 1);
+        short minLength = OperationSupport.getInstance().KARATSUBA_MIN_LENGTH;
+        if (minLength > 0 && size >= minLength && other.size >= minLength && size > half && other.size > half
+                && (short) (2 * half + 2) <= rm.MAX_SQ_LENGTH) {
+            multKaratsuba(other, half);
+            return;
+        }
+
         BigNatInternal tmp = rm.BN_F;
         tmp.lock();
         tmp.clone(this);
@@ -464,6 +512,341 @@ public class BigNatInternal {
         tmp.unlock();
     }
 
+    /**
+     * Squares this using software multiplications and stores results into this.
+     *
+     * Each cross product x_i * x_j (i < j) is computed only once and doubled, which roughly halves the number of
+     * digit multiplications compared to mult(this).
+     */
+    public void sq() {
+        BigNatInternal x = rm.BN_F;
+        x.lock();
+        x.clone(this);
+        setSizeToMax(true);
+
+        // this = sum of x_i * x_j * B^(i + j) for i < j
+        short n = x.size;
+        short i = (short) (x.value.length - 1);
+        for (short k = 0; k < (short) (n - 1); k++, i--) {
+            add(x, (short) (k + 1), (short) (n - k - 1), (short) (2 * k + 1), (short) (x.value[i] & DIGIT_MASK));
+        }
+
+        // this = 2 * this + sum of x_i^2 * B^(2 * i)
+        short acc = 0;
+        short j = (short) (value.length - 1);
+        for (i = (short) (x.value.length - 1); i >= x.offset && j > offset; i--) {
+            short digit = (short) (x.value[i] & DIGIT_MASK);
+            short square = (short) (digit * digit);
+
+            acc += (short) ((short) ((value[j] & DIGIT_MASK) << 1) + (short) (square & DIGIT_MASK));
+            value[j--] = (byte) (acc & DIGIT_MASK);
+            acc = (short) ((acc >> DIGIT_LEN) & DIGIT_MASK);
+
+            acc += (short) ((short) ((value[j] & DIGIT_MASK) << 1) + (short) ((square >> DIGIT_LEN) & DIGIT_MASK));
+            value[j--] = (byte) (acc & DIGIT_MASK);
+            acc = (short) ((acc >> DIGIT_LEN) & DIGIT_MASK);
+        }
+        shrink();
+        x.unlock();
+    }
+
+    /**
+     * Multiplies this and other using a single level of Karatsuba multiplication and stores results into this.
+     *
+     * With x = x_1 * B^half + x_0 and y = y_1 * B^half + y_0, the product is assembled from three half-size products
+     * z_0 = x_0 * y_0, z_2 = x_1 * y_1 and (x_0 + x_1)(y_0 + y_1) = z_0 + z_1 + z_2. Both this and other must be
+     * longer than half digits.
+     *
+     * @param other the other operand
+     * @param half number of digits in the lower halves
+     */
+    private void multKaratsuba(BigNatInternal other, short half) {
+        BigNatInternal x = rm.BN_F;
+        BigNatInternal tmp = rm.BN_G;
+        short xLen = size;
+        short yLen = other.size;
+        short sumLen = (short) (half + 1);
+
+        x.lock();
+        x.clone(this);
+        setSizeToMax(true);
+
+        // tmp = (x_0 + x_1) * B^(half + 1) + (y_0 + y_1)
+        tmp.lock();
+        tmp.setSize((short) (2 * sumLen));
+        tmp.zero();
+        tmp.add(x, (short) 0, half, sumLen, (short) 1);
+        tmp.add(x, half, (short) (xLen - half), sumLen, (short) 1);
+        tmp.add(other, (short) 0, half, (short) 0, (short) 1);
+        tmp.add(other, half, (short) (yLen - half), (short) 0, (short) 1);
+
+        // this = (x_0 + x_1)(y_0 + y_1) * B^half
+        multAdd(tmp, sumLen, sumLen, tmp, (short) 0, sumLen, half);
+
+        // this += z_0 - z_0 * B^half
+        tmp.setSize((short) (2 * half));
+        tmp.zero();
+        tmp.multAdd(x, (short) 0, half, other, (short) 0, half, (short) 0);
+        add(tmp, (short) 0, (short) 1);
+        subtract(tmp, half, (short) 1);
+
+        // this += z_2 * B^(2 * half) - z_2 * B^half
+        tmp.setSize((short) (xLen + yLen - 2 * half));
+        tmp.zero();
+        tmp.multAdd(x, half, (short) (xLen - half), other, half, (short) (yLen - half), (short) 0);
+        add(tmp, (short) (2 * half), (short) 1);
+        subtract(tmp, half, (short) 1);
+        tmp.unlock();
+
+        x.unlock();
+        shrink();
+    }
+
+    /**
+     * Computes the product of digit ranges of a and b, shifts it by shift digits and adds it to this.
+     * Ranges start the given number of digits from the least significant digit.
+     */
+    private void multAdd(BigNatInternal a, short aFrom, short aLen, BigNatInternal b, short bFrom, short bLen, short shift) {
+        short i = (short) (b.value.length - 1 - bFrom);
+        for (short k = 0; k < bLen && i >= b.offset; k++, i--) {
+            add(a, aFrom, aLen, (short) (shift + k), (short) (b.value[i] & DIGIT_MASK));
+        }
+    }
+
+    /**
+     * Computes this mod modulus using Barrett reduction and stores the result into this. The size of this is kept.
+     *
+     * Falls back to remainderDivide if this is longer than twice the length of modulus or cannot hold an extra digit.
+     *
+     * @param modulus modulus without leading zeroes
+     * @param mu floor(2^(16 * modulus.length()) / modulus)
+     */
+    protected void barrettReduce(BigNatInternal modulus, BigNatInternal mu) {
+        short k = modulus.size;
+        short originalSize = size;
+        shrink();
+        if (size > (short) (2 * k) || (short) value.length == k) {
+            remainderDivide(modulus, null);
+            resize(originalSize);
+            return;
+        }
+        if (size < k) {
+            resize(originalSize);
+            return;
+        }
+
+        // q = floor(this / B^(k - 1)) * mu, its digits from k + 1 are the quotient estimate
+        BigNatInternal q = rm.BN_G;
+        q.lock();
+        q.setSize((short) (size - k + 1 + mu.size));
+        q.zero();
+        q.multAdd(this, (short) (k - 1), (short) (size - k + 1), mu, (short) 0, mu.size, (short) 0);
+
+        // this = (this - quotient * modulus) mod B^(k + 1)
+        resize((short) (k + 1));
+        short i = (short) (q.value.length - 1 - (short) (k + 1));
+        for (short j = 0; j <= k && i >= q.offset; j++, i--) {
+            subtract(modulus, j, (short) (q.value[i] & DIGIT_MASK));
+        }
+        q.unlock();
+
+        while (!isLesser(modulus)) {
+            subtract(modulus);
+        }
+        resize(originalSize);
+    }
+
+    /**
+     * Computes this mod modulus for modulus with a short c = B^k mod modulus, where k is the length of modulus,
+     * and stores the result into this. The size of this is kept.
+     *
+     * The digits above k are folded onto the lower ones as this = H * B^k + L = H * c + L (mod modulus), which costs
+     * c.length() passes over the value instead of a division. Falls back to remainderDivide if this is longer than
+     * twice the length of modulus.
+     *
+     * @param modulus modulus without leading zeroes
+     * @param c B^k mod modulus, at most (k - 1) / 2 digits long
+     */
+    protected void foldReduce(BigNatInternal modulus, BigNatInternal c) {
+        short k = modulus.size;
+        short originalSize = size;
+        shrink();
+        if (size > (short) (2 * k)) {
+            remainderDivide(modulus, null);
+            resize(originalSize);
+            return;
+        }
+        if (size < k) {
+            resize(originalSize);
+            return;
+        }
+
+        // tmp = H * c + L, at most c.length() + 1 digits longer than modulus
+        BigNatInternal tmp = rm.BN_G;
+        tmp.lock();
+        tmp.setSize((short) (k + c.size + 1));
+        tmp.zero();
+        tmp.multAdd(this, k, (short) (size - k), c, (short) 0, c.size, (short) 0);
+        tmp.add(this, (short) 0, k, (short) 0, (short) 1);
+
+        // this = H' * c + L' with a short H', a carry out of k digits is folded once more
+        setSize(k);
+        zero();
+        multAdd(tmp, k, (short) (tmp.size - k), c, (short) 0, c.size, (short) 0);
+        byte carry = add(tmp, (short) 0, k, (short) 0, (short) 1);
+        tmp.unlock();
+        if (carry != 0) {
+            add(c);
+        }
+
+        while (!isLesser(modulus)) {
+            subtract(modulus);
+        }
+        resize(originalSize);
+    }
+
+    /**
+     * Computes this mod modulus for a generalized Mersenne modulus and stores the result into this. The size of this
+     * is kept.
+     *
+     * The modulus is described by a table expressing each 32-bit word of this above the length of modulus as a signed
+     * combination of the lower words, e.g., the NIST reduction formulas for P-256. The coefficients of the m upper
+     * words for the lower word i are stored at coefficients[i * m]. The folded sum is computed in place digit by digit
+     * and corrected by a few additions or subtractions of modulus. Falls back to remainderDivide if this is longer
+     * than twice the length of modulus.
+     *
+     * @param modulus modulus without leading zeroes, its length must be a multiple of 4
+     * @param coefficients table of coefficients in range [-8; 8]
+     */
+    protected void solinasReduce(BigNatInternal modulus, byte[] coefficients) {
+        short k = modulus.size;
+        short words = (short) (k / 4);
+        short originalSize = size;
+        shrink();
+        if (size > (short) (2 * k)) {
+            remainderDivide(modulus, null);
+            resize(originalSize);
+            return;
+        }
+        if (size < k) {
+            resize(originalSize);
+            return;
+        }
+
+        short last = (short) (value.length - 1);
+        short acc = 0;
+        for (short i = 0; i < words; i++) {
+            for (short d = 0; d < 4; d++) {
+                short j = (short) (last - (short) (4 * i + d));
+                acc += (short) (value[j] & DIGIT_MASK);
+                for (short w = 0; w < words; w++) {
+                    byte coefficient = coefficients[(short) (i * words + w)];
+                    short position = (short) (k + 4 * w + d);
+                    if (coefficient != 0 && position < size) {
+                        acc += (short) (coefficient * (value[(short) (last - position)] & DIGIT_MASK));
+                    }
+                }
+                value[j] = (byte) (acc & DIGIT_MASK);
+                acc >>= DIGIT_LEN;
+            }
+        }
+
+        // this = acc * B^k + low digits, where acc is a small signed carry
+        setSize(k);
+        while (acc < 0) {
+            if (add(modulus) != 0) {
+                acc++;
+            }
+        }
+        while (acc > 0) {
+            if (isLesser(modulus)) {
+                acc--;
+            }
+            subtract(modulus);
+        }
+        while (!isLesser(modulus)) {
+            subtract(modulus);
+        }
+        resize(originalSize);
+    }
+
+    /**
+     * Computes this * R^(-1) mod modulus using Montgomery reduction and stores the result into this.
+     *
+     * R = 2^(8 * modulus.length()) and this must be lesser than modulus * R.
+     *
+     * @param modulus odd modulus
+     * @param nPrime -modulus^(-1) mod 2^8
+     */
+    protected void montReduce(BigNatInternal modulus, short nPrime) {
+        short k = modulus.size;
+        resize((short) (2 * k + 1));
+        for (short i = 0; i < k; i++) {
+            short m = (short) ((short) ((value[(short) (value.length - 1 - i)] & DIGIT_MASK) * nPrime) & DIGIT_MASK);
+            add(modulus, i, m);
+        }
+
+        // divide by R, the lowest k digits are zero now
+        Util.arrayCopyNonAtomic(value, offset, value, (short) (offset + k), (short) (k + 1));
+        setSize((short) (k + 1));
+        if (!isLesser(modulus)) {
+            subtract(modulus);
+        }
+        setSize(k);
+    }
+
+    /**
+     * Computes this * other * R^(-1) mod modulus and stores the result into this.
+     *
+     * R = 2^(8 * modulus.length()), both this and other must be lesser than modulus.
+     *
+     * @param other the other operand
+     * @param modulus odd modulus
+     * @param nPrime -modulus^(-1) mod 2^8
+     */
+    protected void montMult(BigNatInternal other, BigNatInternal modulus, short nPrime) {
+        BigNatInternal tmp = rm.BN_G;
+        tmp.lock();
+        tmp.setSize((short) (2 * modulus.size + 1));
+        tmp.zero();
+        tmp.multAdd(this, (short) 0, size, other, (short) 0, other.size, (short) 0);
+        tmp.montReduce(modulus, nPrime);
+        setSize(modulus.size);
+        copy(tmp);
+        tmp.unlock();
+    }
+
+    /**
+     * Computes this^2 * R^(-1) mod modulus and stores the result into this.
+     *
+     * R = 2^(8 * modulus.length()), this must be lesser than modulus.
+     *
+     * @param modulus odd modulus
+     * @param nPrime -modulus^(-1) mod 2^8
+     */
+    protected void montSq(BigNatInternal modulus, short nPrime) {
+        BigNatInternal tmp = rm.BN_G;
+        tmp.lock();
+        tmp.clone(this);
+        tmp.sq();
+        tmp.montReduce(modulus, nPrime);
+        setSize(modulus.size);
+        copy(tmp);
+        tmp.unlock();
+    }
+
+    /**
+     * Computes -this^(-1) mod 2^8 for odd this, the constant used by Montgomery reduction.
+     */
+    protected short montConstant() {
+        short digit = (short) (value[(short) (value.length - 1)] & DIGIT_MASK);
+        short inverse = digit; // correct modulo 2^3 for odd digit
+        for (short i = 0; i < 2; i++) {
+            inverse = (short) ((short) (inverse * (short) (2 - (short) (digit * inverse))) & DIGIT_MASK);
+        }
+        return (short) ((short) (-inverse) & DIGIT_MASK);
+    }
+
     /**
      * Right bit shift with carry
      *
@@ -484,12 +867,24 @@ public class BigNatInternal {
     }
 
     /**
-     * Right bit shift
+     * Right bit shift. Whole bytes are moved at once, the remaining bits in a single pass. The size is kept.
      *
      * @param bits number of bits to shift by
      */
     public void shiftRight(short bits) {
-        shiftRight(bits, (short) 0);
+        short bytes = (short) (bits >> 3);
+        if (bytes >= size) {
+            zero();
+            return;
+        }
+        if (bytes > 0) {
+            Util.arrayCopyNonAtomic(value, offset, value, (short) (offset + bytes), (short) (size - bytes));
+            Util.arrayFillNonAtomic(value, offset, bytes, (byte) 0);
+        }
+        bits &= 7;
+        if (bits != 0) {
+            shiftRight(bits, (short) 0);
+        }
     }
 
     /**
@@ -517,18 +912,92 @@ public class BigNatInternal {
     }
 
     /**
-     * Right bit shift
+     * Left bit shift. Whole bytes are moved at once, the remaining bits in a single pass. The size is increased only
+     * if the result does not fit.
      *
      * @param bits number of bits to shift by
      */
     public void shiftLeft(short bits) {
-        shiftLeft(bits, (short) 0);
+        short bytes = (short) (bits >> 3);
+        if (bytes > 0) {
+            short zeroes = 0;
+            while (zeroes < size && value[(short) (offset + zeroes)] == (byte) 0) {
+                ++zeroes;
+            }
+            if (zeroes < bytes) {
+                resize((short) (size + bytes - zeroes));
+            }
+            Util.arrayCopyNonAtomic(value, (short) (offset + bytes), value, offset, (short) (size - bytes));
+            Util.arrayFillNonAtomic(value, (short) (value.length - bytes), bytes, (byte) 0);
+        }
+        bits &= 7;
+        if (bits != 0) {
+            shiftLeft(bits, (short) 0);
+        }
+    }
+
+    /**
+     * Returns the number of trailing zero bits, i.e., the largest k such that 2^k divides this.
+     *
+     * @return number of trailing zero bits or the size in bits if this is zero
+     */
+    public short trailingZeros() {
+        short bits = 0;
+        for (short i = (short) (value.length - 1); i >= offset; i--) {
+            short digit = (short) (value[i] & DIGIT_MASK);
+            if (digit != 0) {
+                while ((short) (digit & 1) == 0) {
+                    digit >>= 1;
+                    ++bits;
+                }
+                return bits;
+            }
+            bits += DIGIT_LEN;
+        }
+        return bits;
+    }
+
+    /**
+     * Returns the number of bits without leading zeroes.
+     *
+     * @return bit length of this or 0 if this is zero
+     */
+    public short bitLength() {
+        for (short i = offset; i < (short) value.length; i++) {
+            short digit = (short) (value[i] & DIGIT_MASK);
+            if (digit != 0) {
+                short bits = (short) ((short) (value.length - 1 - i) * DIGIT_LEN);
+                while (digit != 0) {
+                    digit >>= 1;
+                    ++bits;
+                }
+                return bits;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the bit at the given position counted from the least significant bit.
+     *
+     * @param bitIndex position of the bit
+     * @return 1 if the bit is set, 0 otherwise or if the position exceeds the size of this
+     */
+    public byte getBit(short bitIndex) {
+        short index = (short) ((short) (value.length - 1) - (short) (bitIndex / DIGIT_LEN));
+        if (index < offset) {
+            return 0;
+        }
+        return (byte) ((value[index] >> (short) (bitIndex % DIGIT_LEN)) & 1);
     }
 
     /**
      * Divide this by divisor and store the remained in this and quotient in quotient.
      *
-     * Quadratic complexity in digit difference of this and divisor.
+     * Uses Knuth's Algorithm D. Each quotient digit is estimated from the leading 16 bits of the current remainder
+     * and divisor normalized so that the leading bit of divisor is set, refined with the next digits and corrected
+     * at most twice before and once after the subtraction. The normalized digits are computed on the fly, so neither
+     * this nor divisor is shifted. Quadratic complexity in digit difference of this and divisor.
      *
      * @param divisor non-zero number
      * @param quotient may be null
@@ -542,51 +1011,47 @@ public class BigNatInternal {
         while (divisor.value[divisorIndex] == 0) {
             divisorIndex++;
         }
+        short divisorLength = (short) (divisor.value.length - divisorIndex);
+        short normShift = (short) (highestOneBit((short) (divisor.value[divisorIndex] & DIGIT_MASK)) - DIGIT_LEN);
+        short v1 = normalizedDigit(divisor, (short) (divisorLength - 1), normShift);
+        short v2 = normalizedDigit(divisor, (short) (divisorLength - 2), normShift);
+
+        short length = size;
+        for (short i = offset; i < (short) value.length && value[i] == 0; i++) {
+            length--;
+        }
 
-        short divisorShift = (short) (size - divisor.size + divisorIndex - divisor.offset);
-        short divisionRound = 0;
-        short firstDivisorDigit = (short) (divisor.value[divisorIndex] & DIGIT_MASK);
-        short divisorBitShift = (short) (highestOneBit((short) (firstDivisorDigit + 1)) - 1);
-        byte secondDivisorDigit = divisorIndex < (short) (divisor.value.length - 1) ? divisor.value[(short) (divisorIndex + 1)] : 0;
-        byte thirdDivisorDigit = divisorIndex < (short) (divisor.value.length - 2) ? divisor.value[(short) (divisorIndex + 2)] : 0;
-
-        while (divisorShift >= 0) {
-            while (!isLesser(divisor, divisorShift, (short) (divisionRound > 0 ? divisionRound - 1 : 0))) {
-                short divisionRoundOffset = (short) (divisionRound + offset);
-                short dividentDigits = divisionRound == 0 ? 0 : (short) ((short) (value[(short) (divisionRoundOffset - 1)]) << DIGIT_LEN);
-                dividentDigits |= (short) (value[(short) (divisionRound + offset)] & DIGIT_MASK);
-
-                short divisorDigit;
-                if (dividentDigits < 0) {
-                    dividentDigits = (short) ((dividentDigits >>> 1) & POSITIVE_DOUBLE_DIGIT_MASK);
-                    divisorDigit = (short) ((firstDivisorDigit >>> 1) & POSITIVE_DOUBLE_DIGIT_MASK);
-                } else {
-                    short dividentBitShift = (short) (highestOneBit(dividentDigits) - 1);
-                    short bitShift = dividentBitShift <= divisorBitShift ? dividentBitShift : divisorBitShift;
-
-                    dividentDigits = shiftBits(
-                            dividentDigits, divisionRound < (short) (size - 1) ? value[(short) (divisionRoundOffset + 1)] : 0,
-                            divisionRound < (short) (size - 2) ? value[(short) (divisionRoundOffset + 2)] : 0,
-                            bitShift
-                    );
-                    divisorDigit = shiftBits(firstDivisorDigit, secondDivisorDigit, thirdDivisorDigit, bitShift);
-                }
+        for (short j = (short) (length - divisorLength); j >= 0; j--) {
+            short u0 = normalizedDigit(this, (short) (j + divisorLength), normShift);
+            short u1 = normalizedDigit(this, (short) (j + divisorLength - 1), normShift);
+            short u2 = normalizedDigit(this, (short) (j + divisorLength - 2), normShift);
+
+            // (u0 * B + u1) / v1 using signed 16-bit arithmetic, u0 <= v1 holds
+            short dividend = (short) ((short) (u0 << DIGIT_LEN) | u1);
+            short half = (short) ((dividend >>> 1) & POSITIVE_DOUBLE_DIGIT_MASK);
+            short qHat = (short) (half / v1);
+            short rHat = (short) ((short) ((short) (half % v1) << 1) | (dividend & 1));
+            qHat <<= 1;
+            if (rHat >= v1) {
+                qHat++;
+                rHat -= v1;
+            }
 
-                short multiple = (short) (dividentDigits / (short) (divisorDigit + 1));
-                if (multiple < 1) {
-                    multiple = 1;
-                }
+            // decrease the estimate while qHat >= B or qHat * v2 > rHat * B + u2
+            while (qHat > DIGIT_MASK || (rHat <= DIGIT_MASK && isGreaterUnsigned(
+                    (short) (qHat * v2), (short) ((short) (rHat << DIGIT_LEN) | u2)))) {
+                qHat--;
+                rHat += v1;
+            }
 
-                subtract(divisor, divisorShift, multiple);
+            if (qHat != 0 && subtract(divisor, j, qHat) != 0) {
+                add(divisor, j, (short) 1);
+                qHat--;
+            }
 
-                if (quotient != null) {
-                    short divisorShiftOffset = (short) (divisorShift - quotient.offset);
-                    short quotientDigit = (short) ((quotient.value[(short) (quotient.size - 1 - divisorShiftOffset)] & DIGIT_MASK) + multiple);
-                    quotient.value[(short) (quotient.size - 1 - divisorShiftOffset)] = (byte) quotientDigit;
-                }
+            if (quotient != null) {
+                quotient.value[(short) (quotient.value.length - 1 - j)] = (byte) qHat;
             }
-            divisionRound++;
-            divisorShift--;
         }
 
         if (quotient != null) {
@@ -594,6 +1059,29 @@ public class BigNatInternal {
         }
     }
 
+    /**
+     * Get the digit at the given position of x shifted to the left by shift bits. Used in remainderDivide.
+     *
+     * @param x number
+     * @param position position of the digit counted from the least significant digit
+     * @param shift the left shift in range [0; 7]
+     * @return digit of x * 2^shift
+     */
+    private static short normalizedDigit(BigNatInternal x, short position, short shift) {
+        short high = position >= 0 && position < x.size ? (short) (x.value[(short) (x.value.length - 1 - position)] & DIGIT_MASK) : 0;
+        short low = position >= 1 && position <= x.size ? (short) (x.value[(short) (x.value.length - position)] & DIGIT_MASK) : 0;
+        return (short) ((short) ((short) (high << shift) | (short) (low >>> (DIGIT_LEN - shift))) & DIGIT_MASK);
+    }
+
+    /**
+     * Compares two shorts as unsigned 16-bit values. Used in remainderDivide.
+     *
+     * @return true if a is greater than b, false otherwise
+     */
+    private static boolean isGreaterUnsigned(short a, short b) {
+        return (short) (a ^ (short) 0x8000) > (short) (b ^ (short) 0x8000);
+    }
+
     /**
      * Get the index of the highest bit set to 1. Used in remainderDivide.
      */
@@ -607,41 +1095,6 @@ public class BigNatInternal {
         return DOUBLE_DIGIT_LEN;
     }
 
-    /**
-     * Shift to the left and fill. Used in remainderDivide.
-     *
-     * @param high most significant 16 bits
-     * @param middle middle 8 bits
-     * @param low least significant 8 bits
-     * @param shift the left shift
-     * @return most significant 16 bits as short
-     */
-    private static short shiftBits(short high, byte middle, byte low, short shift) {
-        // shift high
-        high <<= shift;
-
-        // merge middle bits
-        byte mask = (byte) (DIGIT_MASK << (shift >= DIGIT_LEN ? 0 : DIGIT_LEN - shift));
-        short bits = (short) ((short) (middle & mask) & DIGIT_MASK);
-        if (shift > DIGIT_LEN) {
-            bits <<= shift - DIGIT_LEN;
-        } else {
-            bits >>>= DIGIT_LEN - shift;
-        }
-        high |= bits;
-
-        if (shift <= DIGIT_LEN) {
-            return high;
-        }
-
-        // merge low bits
-        mask = (byte) (DIGIT_MASK << DOUBLE_DIGIT_LEN - shift);
-        bits = (short) ((((short) (low & mask) & DIGIT_MASK) >> DOUBLE_DIGIT_LEN - shift));
-        high |= bits;
-
-        return high;
-    }
-
     /// [DependencyBegin:ObjectLocker]
     private boolean ERASE_ON_LOCK = false;
     private boolean ERASE_ON_UNLOCK = false;
@@ -0,0 +1,424 @@
+package opencrypto.jcmathlib;
+
+import javacard.framework.ISOException;
+
+/**
+ * Natural number with 16-bit digits stored in a short array.
+ *
+ * Provides the storage, comparison and basic arithmetic API of BigNatInternal, but processes two bytes in every
+ * iteration of add, subtract, shift and multiplication loops. Values are converted from and to big-endian byte
+ * representation in fromByteArray and copyToByteArray. Sizes are given in bytes and rounded up to whole digits,
+ * so length() is always even.
+ */
+public class BigNatShort {
+    protected final ResourceManager rm;
+    private static final short DIGIT_LEN = 16, BYTE_MASK = 0xff, BYTE_LEN = 8;
+
+    private short[] value;
+    private short size; // The current size of internal representation in digits.
+    private short offset;
+
+    /**
+     * Construct a BigNatShort of at least a given size in bytes.
+     */
+    public BigNatShort(short size, byte allocatorType, ResourceManager rm) {
+        this.rm = rm;
+        this.size = digits(size);
+        this.value = rm.memAlloc.allocateShortArray((short) (this.size + 1), allocatorType);
+        this.offset = 1;
+    }
+
+    /**
+     * Get number of digits needed for a given number of bytes.
+     */
+    private static short digits(short bytes) {
+        return (short) ((short) (bytes + 1) >> 1);
+    }
+
+    /**
+     * Set value of this from a byte array representation.
+     *
+     * @param source the byte array
+     * @param sourceOffset offset in the byte array
+     * @param length length of the value representation
+     * @return number of bytes read
+     */
+    public short fromByteArray(byte[] source, short sourceOffset, short length) {
+        if (length > (short) (2 * value.length)) {
+            length = (short) (2 * value.length);
+        }
+        setSize(length);
+        short j = (short) (sourceOffset + length - 1);
+        for (short i = (short) (value.length - 1); i >= offset; i--, j -= 2) {
+            short low = (short) (source[j] & BYTE_MASK);
+            short high = j > sourceOffset ? (short) (source[(short) (j - 1)] & BYTE_MASK) : 0;
+            value[i] = (short) ((short) (high << BYTE_LEN) | low);
+        }
+        return length;
+    }
+
+    /**
+     * Serialize this BigNatShort value into a provided byte array.
+     *
+     * @param dst the byte array
+     * @param dstOffset offset in the byte array
+     * @return number of bytes written
+     */
+    public short copyToByteArray(byte[] dst, short dstOffset) {
+        for (short i = offset; i < (short) value.length; i++) {
+            dst[dstOffset++] = (byte) (value[i] >> BYTE_LEN);
+            dst[dstOffset++] = (byte) value[i];
+        }
+        return length();
+    }
+
+    /**
+     * Get size of this BigNatShort in bytes.
+     *
+     * @return size in bytes
+     */
+    public short length() {
+        return (short) (2 * size);
+    }
+
+    /**
+     * Sets the size of this BigNatShort in bytes, rounded up to whole digits.
+     *
+     * Previous value is kept so value is either non-destructively trimmed or enlarged.
+     *
+     * @param newSize the new size
+     */
+    public void setSize(short newSize) {
+        short newDigits = digits(newSize);
+        if (newSize < 0 || newDigits > value.length) {
+            ISOException.throwIt(ReturnCodes.SW_BIGNAT_RESIZETOLONGER);
+        }
+        size = newDigits;
+        offset = (short) (value.length - size);
+    }
+
+    /**
+     * Resize this BigNatShort value to given size in bytes, rounded up to whole digits. May result in truncation.
+     *
+     * @param newSize new size in bytes
+     */
+    public void resize(short newSize) {
+        if (digits(newSize) > (short) value.length) {
+            ISOException.throwIt(ReturnCodes.SW_BIGNAT_REALLOCATIONNOTALLOWED);
+        }
+
+        short diff = (short) (digits(newSize) - size);
+        setSize(newSize);
+        if (diff > 0) {
+            fill(offset, diff);
+        }
+    }
+
+    /**
+     * Remove leading zero digits from this BigNatShort and decrease its size accordingly.
+     */
+    public void shrink() {
+        short i;
+        for (i = offset; i < value.length; i++) { // Find first non-zero digit
+            if (value[i] != 0) {
+                break;
+            }
+        }
+        size = (short) (value.length - i);
+        offset = i;
+    }
+
+    /**
+     * Set this BigNatShort value to zero. Previous size is kept.
+     */
+    public void zero() {
+        fill(offset, size);
+    }
+
+    /**
+     * Set a range of digits to zero.
+     */
+    private void fill(short from, short length) {
+        for (short i = from; i < (short) (from + length); i++) {
+            value[i] = 0;
+        }
+    }
+
+    /**
+     * Copy a range of digits of other into this.
+     */
+    private void copyDigits(BigNatShort other, short otherFrom, short thisFrom, short length) {
+        for (short i = 0; i < length; i++) {
+            value[(short) (thisFrom + i)] = other.value[(short) (otherFrom + i)];
+        }
+    }
+
+    /**
+     * Set this BigNatShort to a given value. Previous size is kept.
+     */
+    public void setValue(short newValue) {
+        zero();
+        value[(short) (value.length - 1)] = newValue;
+    }
+
+    /**
+     * Copies a BigNatShort into this without changing size. May throw an exception if this is too small.
+     */
+    public void copy(BigNatShort other) {
+        short diff = (short) (size - other.size);
+        if (diff >= 0) {
+            fill(offset, diff);
+            copyDigits(other, other.offset, (short) (offset + diff), other.size);
+            return;
+        }
+        for (short i = other.offset; i < (short) (other.offset - diff); i++) {
+            if (other.value[i] != 0) {
+                ISOException.throwIt(ReturnCodes.SW_BIGNAT_INVALIDCOPYOTHER);
+            }
+        }
+        copyDigits(other, (short) (other.offset - diff), offset, size);
+    }
+
+    /**
+     * Copies a BigNatShort into this including its size. May require reallocation.
+     */
+    public void clone(BigNatShort other) {
+        if (other.size > (short) value.length) {
+            ISOException.throwIt(ReturnCodes.SW_BIGNAT_REALLOCATIONNOTALLOWED);
+        }
+        size = other.size;
+        offset = (short) (value.length - size);
+        fill((short) 0, offset);
+        copyDigits(other, other.offset, offset, size);
+    }
+
+    /**
+     * Test equality with zero.
+     */
+    public boolean isZero() {
+        for (short i = offset; i < value.length; i++) {
+            if (value[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Test equality with one.
+     */
+    public boolean isOne() {
+        for (short i = offset; i < (short) (value.length - 1); i++) {
+            if (value[i] != 0) {
+                return false;
+            }
+        }
+        return value[(short) (value.length - 1)] == (short) 0x01;
+    }
+
+    /**
+     * Check if stored BigNatShort is odd.
+     */
+    public boolean isOdd() {
+        return (short) (value[(short) (value.length - 1)] & 1) != 0;
+    }
+
+    /**
+     * Returns true if this BigNatShort is lesser than the other BigNatShort.
+     */
+    public boolean isLesser(BigNatShort other) {
+        short thisLength = size, otherLength = other.size;
+        short i = offset, j = other.offset;
+        for (; thisLength > otherLength; thisLength--, i++) {
+            if (value[i] != 0) {
+                return false;
+            }
+        }
+        for (; otherLength > thisLength; otherLength--, j++) {
+            if (other.value[j] != 0) {
+                return true;
+            }
+        }
+        for (; i < (short) value.length; i++, j++) {
+            if (value[i] != other.value[j]) {
+                return isLesserUnsigned(value[i], other.value[j]);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Compares two digits as unsigned 16-bit values.
+     *
+     * @return true if a is lesser than b, false otherwise
+     */
+    private static boolean isLesserUnsigned(short a, short b) {
+        return (short) (a ^ (short) 0x8000) < (short) (b ^ (short) 0x8000);
+    }
+
+    /**
+     * Adds other to this. Outputs carry bit.
+     *
+     * @param other BigNatShort to add
+     * @return non-zero if carry occurs, zero otherwise
+     */
+    public byte add(BigNatShort other) {
+        short carry = 0;
+        short i = (short) (value.length - 1);
+        for (short j = (short) (other.value.length - 1); j >= other.offset && i >= offset; i--, j--) {
+            short sum = (short) (value[i] + other.value[j]);
+            short nextCarry = isLesserUnsigned(sum, value[i]) ? (short) 1 : 0;
+            sum += carry;
+            if (sum == 0 && carry != 0) {
+                nextCarry = 1;
+            }
+            value[i] = sum;
+            carry = nextCarry;
+        }
+        for (; carry != 0 && i >= offset; i--) {
+            value[i]++;
+            carry = value[i] == 0 ? (short) 1 : 0;
+        }
+        return (byte) carry;
+    }
+
+    /**
+     * Subtract provided other BigNatShort from this BigNatShort.
+     *
+     * @param other BigNatShort to be subtracted from this
+     */
+    public void subtract(BigNatShort other) {
+        short borrow = 0;
+        short i = (short) (value.length - 1);
+        for (short j = (short) (other.value.length - 1); j >= other.offset && i >= offset; i--, j--) {
+            short nextBorrow = isLesserUnsigned(value[i], other.value[j]) ? (short) 1 : 0;
+            short difference = (short) (value[i] - other.value[j]);
+            if (difference == 0 && borrow != 0) {
+                nextBorrow = 1;
+            }
+            value[i] = (short) (difference - borrow);
+            borrow = nextBorrow;
+        }
+        for (; borrow != 0 && i >= offset; i--) {
+            borrow = value[i] == 0 ? (short) 1 : 0;
+            value[i]--;
+        }
+    }
+
+    /**
+     * Multiplies this and other using schoolbook multiplication and stores results into this.
+     *
+     * The digits of this are consumed from the most significant one, so the product is accumulated in place. This
+     * must be large enough to fit the result.
+     */
+    public void mult(BigNatShort other) {
+        short thisOffset = offset;
+        setSize((short) (2 * value.length));
+        fill((short) 0, thisOffset);
+        for (short i = thisOffset; i < (short) value.length; i++) {
+            short digit = value[i];
+            if (digit == 0) {
+                continue;
+            }
+            value[i] = 0;
+            multAdd(other, (short) (value.length - 1 - i), digit);
+        }
+        shrink();
+    }
+
+    /**
+     * Computes other * multiplier, shifts the results by shift digits and adds it to this.
+     * This must be large enough to fit the results.
+     */
+    private void multAdd(BigNatShort other, short shift, short multiplier) {
+        short multiplierLow = (short) (multiplier & BYTE_MASK);
+        short multiplierHigh = (short) ((short) (multiplier >> BYTE_LEN) & BYTE_MASK);
+        short carry = 0;
+        short i = (short) (value.length - 1 - shift);
+        for (short j = (short) (other.value.length - 1); j >= other.offset && i >= offset; i--, j--) {
+            short digitLow = (short) (other.value[j] & BYTE_MASK);
+            short digitHigh = (short) ((short) (other.value[j] >> BYTE_LEN) & BYTE_MASK);
+
+            // 32-bit product of two digits from four 16-bit partial products
+            short middle = (short) (digitLow * multiplierHigh);
+            short middleSum = (short) (middle + (short) (digitHigh * multiplierLow));
+            short high = (short) (digitHigh * multiplierHigh);
+            if (isLesserUnsigned(middleSum, middle)) {
+                high += (short) 0x0100;
+            }
+            high += (short) ((short) (middleSum >> BYTE_LEN) & BYTE_MASK);
+            short lowPart = (short) (digitLow * multiplierLow);
+            short low = (short) (lowPart + (short) (middleSum << BYTE_LEN));
+            if (isLesserUnsigned(low, lowPart)) {
+                high++;
+            }
+
+            // value[i] + low + carry, the new carry is at most 0xffff
+            short sum = (short) (value[i] + low);
+            if (isLesserUnsigned(sum, low)) {
+                high++;
+            }
+            short sumCarry = (short) (sum + carry);
+            if (isLesserUnsigned(sumCarry, carry)) {
+                high++;
+            }
+            value[i] = sumCarry;
+            carry = high;
+        }
+        for (; carry != 0 && i >= offset; i--) {
+            short sum = (short) (value[i] + carry);
+            carry = isLesserUnsigned(sum, carry) ? (short) 1 : 0;
+            value[i] = sum;
+        }
+    }
+
+    /**
+     * Right bit shift with carry
+     *
+     * @param bits number of bits to shift by, in range [0; 15]
+     * @param carry bits to fill the highest bits of the value
+     */
+    protected void shiftRight(short bits, short carry) {
+        if (bits == 0) {
+            return;
+        }
+        short mask = (short) ((short) (1 << bits) - 1); // lowest `bits` bits set to 1
+        short shiftedMask = (short) ((short) (1 << (short) (DIGIT_LEN - bits)) - 1); // clears sign extension
+        for (short i = offset; i < (short) value.length; i++) {
+            short current = value[i];
+            value[i] = (short) ((short) ((short) (current >> bits) & shiftedMask) | carry);
+            carry = (short) ((short) (current & mask) << (short) (DIGIT_LEN - bits));
+        }
+    }
+
+    /**
+     * Right bit shift
+     *
+     * @param bits number of bits to shift by, in range [0; 15]
+     */
+    public void shiftRight(short bits) {
+        shiftRight(bits, (short) 0);
+    }
+
+    /**
+     * Left bit shift. The size is increased if the value does not fit.
+     *
+     * @param bits number of bits to shift by, in range [0; 15]
+     */
+    public void shiftLeft(short bits) {
+        if (bits == 0) {
+            return;
+        }
+        short carry = 0;
+        for (short i = (short) (value.length - 1); i >= offset; --i) {
+            short current = value[i];
+            value[i] = (short) ((short) (current << bits) | carry);
+            carry = (short) ((short) (current >> (short) (DIGIT_LEN - bits)) & (short) ((short) (1 << bits) - 1));
+        }
+
+        if (carry != 0) {
+            setSize((short) (2 * (size + 1)));
+            value[offset] = carry;
+        }
+    }
+}
@@ -16,6 +16,17 @@ public class ECCurve {
     public byte[] p, a, b, G, r;
     public short k;
     public BigNat pBN, aBN, bBN, rBN;
+    public MontgomeryContext pMont; // allocated on the first use by software arithmetic
+    public BarrettContext pBarrett, rBarrett;
+    public FastReductionContext pFast;
+    public FieldElement feA, feB, feC, feD, feE, feF; // field element views of the EC_BN temporaries
+    public boolean aIsMinusThree; // a = p - 3 allows a cheaper doubling in Jacobian coordinates
+    public ECPoint[] multTable; // odd multiples P, 3P, 5P, ... of the point being multiplied in software
+    public static final short COMB_TEETH = 5; // number of teeth of the comb used for multiplication of G
+    public final short COMB_SPACING; // distance of the teeth, the comb covers all bits of r
+    public byte[] combTable; // sums of the multiples 2^(i * COMB_SPACING) G of G, serialized in uncompressed form
+    public boolean combTableReady;
+    private ECPoint workPoint; // accumulator of software multiplications of points with coordinates in EEPROM
 
 
     public KeyPair disposablePair;
@@ -50,6 +61,7 @@ public class ECCurve {
         KEY_BIT_LENGTH = bits;
         POINT_SIZE = (short) G.length;
         COORD_SIZE = (short) ((short) (G.length - 1) / 2);
+        COMB_SPACING = (short) ((short) (r.length * 8 + COMB_TEETH - 1) / COMB_TEETH);
 
         this.p = p;
         this.a = a;
@@ -59,6 +71,14 @@ public class ECCurve {
         this.k = k;
         this.rm = rm;
 
+        short borrow = 3;
+        aIsMinusThree = a.length == p.length;
+        for (short i = (short) (p.length - 1); aIsMinusThree && i >= 0; i--) {
+            short digit = (short) ((short) (p[i] & 0xff) - borrow);
+            borrow = (short) (digit < 0 ? 1 : 0);
+            aIsMinusThree = (short) (a[i] & 0xff) == (short) (digit & 0xff);
+        }
+
         pBN = new BigNat(COORD_SIZE, JCSystem.MEMORY_TYPE_TRANSIENT_RESET, rm);
         pBN.fromByteArray(p, (short) 0, (short) p.length);
         aBN = new BigNat(COORD_SIZE, JCSystem.MEMORY_TYPE_PERSISTENT, rm);
@@ -67,10 +87,84 @@ public class ECCurve {
         bBN.fromByteArray(b, (short) 0, (short) b.length);
         rBN = new BigNat(COORD_SIZE, JCSystem.MEMORY_TYPE_TRANSIENT_RESET, rm);
         rBN.fromByteArray(r, (short) 0, (short) r.length);
+        pBarrett = new BarrettContext(pBN, JCSystem.MEMORY_TYPE_PERSISTENT, rm);
+        rBarrett = new BarrettContext(rBN, JCSystem.MEMORY_TYPE_PERSISTENT, rm);
+        pFast = new FastReductionContext(pBN, JCSystem.MEMORY_TYPE_PERSISTENT, rm);
+        feA = new FieldElement(rm.EC_BN_A, this);
+        feB = new FieldElement(rm.EC_BN_B, this);
+        feC = new FieldElement(rm.EC_BN_C, this);
+        feD = new FieldElement(rm.EC_BN_D, this);
+        feE = new FieldElement(rm.EC_BN_E, this);
+        feF = new FieldElement(rm.EC_BN_F, this);
 
         disposablePair = newKeyPair(null);
         disposablePriv = (ECPrivateKey) disposablePair.getPrivate();
         disposablePub = (ECPublicKey) disposablePair.getPublic();
+
+        // Software scalar multiplication helpers, allocated on the first use if KeyAgreement is used for multiplication
+        if (OperationSupport.getInstance().EC_SW_MULT) {
+            allocateMultTable(rm.memAlloc.getAllocatorType(ObjectAllocator.EC_MULT_TABLE));
+        }
+        // Comb table of G is constant, so it is allocated in EEPROM and filled on the first multiplication of G
+        combTableReady = false;
+    }
+
+    private void allocateMultTable(byte allocatorType) {
+        multTable = new ECPoint[(short) (1 << (ResourceManager.WNAF_WIDTH - 2))];
+        for (short i = 0; i < (short) multTable.length; i++) {
+            multTable[i] = new ECPoint(this, allocatorType);
+        }
+    }
+
+    /**
+     * Returns the Montgomery context of p, allocated in EEPROM on the first use. Curves used only with RSA engine
+     * arithmetic do not pay for it.
+     *
+     * @return Montgomery context of p
+     */
+    MontgomeryContext getMontgomeryContext() {
+        if (pMont == null) {
+            pMont = new MontgomeryContext(pBN, JCSystem.MEMORY_TYPE_PERSISTENT, rm);
+        }
+        return pMont;
+    }
+
+    /**
+     * Returns the table used by software scalar multiplication. If it was not allocated together with the curve, it
+     * is allocated on the first use.
+     *
+     * @return table of points
+     */
+    ECPoint[] getMultTable() {
+        if (multTable == null) {
+            allocateMultTable(rm.memAlloc.getAllocatorType(ObjectAllocator.EC_MULT_TABLE));
+        }
+        return multTable;
+    }
+
+    /**
+     * Returns the point accumulating software multiplications of points whose coordinates are kept in EEPROM. It is
+     * allocated on the first use with the allocator type of Jacobian coordinates.
+     *
+     * @return work point
+     */
+    ECPoint getWorkPoint() {
+        if (workPoint == null) {
+            workPoint = new ECPoint(this, rm.memAlloc.getAllocatorType(ObjectAllocator.POINT_JACOBIAN));
+        }
+        return workPoint;
+    }
+
+    /**
+     * Returns the comb table used by multiplication of G, allocated in EEPROM on the first use.
+     *
+     * @return serialized table of points
+     */
+    byte[] getCombTable() {
+        if (combTable == null) {
+            combTable = new byte[(short) ((short) ((short) (1 << COMB_TEETH) - 1) * POINT_SIZE)];
+        }
+        return combTable;
     }
 
     /**
@@ -1,6 +1,7 @@
 package opencrypto.jcmathlib;
 
 import javacard.framework.ISOException;
+import javacard.framework.JCSystem;
 import javacard.framework.Util;
 import javacard.security.*;
 
@@ -14,14 +15,51 @@ public class ECPoint {
     private KeyPair pointKeyPair;
     private final ECCurve curve;
 
+    // Jacobian coordinates (X / Z^2, Y / Z^3) of the value used by software arithmetic and, if
+    // OperationSupport.EC_POINT_CACHE is set, as a decoded cache of the public key. The state tells which of the
+    // public key and the coordinates hold the value, the other one is synchronized lazily. Public operations store a result held in transient coordinates into the public key, so
+    // it is not lost on card reset.
+    private final FieldElement jx, jy, jz;
+    private final byte[] state;
+    private static final byte STATE_KEY = 0; // only the public key holds the value
+    private static final byte STATE_CACHED = 1; // both hold the value, the coordinates are affine (Z = 1)
+    private static final byte STATE_JACOBIAN = 2; // only the coordinates hold the value, the public key is stale
+
     /**
      * Creates new ECPoint object for provided {@code curve}. Random initial point value is generated.
      *
      * @param curve point's elliptic curve
      */
     public ECPoint(ECCurve curve) {
+        this(curve, jacobianAllocatorType(curve.rm));
+    }
+
+    /**
+     * Returns the allocator type of the Jacobian coordinates. They are kept in EEPROM unless software point arithmetic
+     * is used.
+     */
+    private static byte jacobianAllocatorType(ResourceManager rm) {
+        OperationSupport os = OperationSupport.getInstance();
+        if (os.EC_SW_MULT || os.EC_SW_DOUBLE || !os.EC_HW_ADD) {
+            return rm.memAlloc.getAllocatorType(ObjectAllocator.POINT_JACOBIAN);
+        }
+        return JCSystem.MEMORY_TYPE_PERSISTENT;
+    }
+
+    /**
+     * Creates new ECPoint object for provided {@code curve} with Jacobian coordinates allocated by the given allocator
+     * type. Random initial point value is generated.
+     *
+     * @param curve point's elliptic curve
+     * @param allocatorType type of allocator for the Jacobian coordinates
+     */
+    ECPoint(ECCurve curve, byte allocatorType) {
         this.curve = curve;
         this.rm = curve.rm;
+        jx = new FieldElement(curve, allocatorType);
+        jy = new FieldElement(curve, allocatorType);
+        jz = new FieldElement(curve, allocatorType);
+        state = rm.memAlloc.allocateByteArray((short) 1, allocatorType);
         updatePointObjects();
     }
 
@@ -41,16 +79,19 @@ public class ECPoint {
     public final void updatePointObjects() {
         pointKeyPair = curve.newKeyPair(pointKeyPair);
         point = (ECPublicKey) pointKeyPair.getPublic();
+        state[0] = STATE_KEY;
     }
 
     /**
      * Generates new random point value.
      */
     public void randomize() {
+        state[0] = STATE_KEY;
         if (OperationSupport.getInstance().EC_GEN) {
             pointKeyPair.genKeyPair(); // Fails for some curves on some cards
         } else {
             BigNat tmp = rm.EC_BN_A;
+            BigNat scalar = rm.EC_BN_F; // software multiplication uses EC_BN_A-E
             rm.lock(rm.ARRAY_A);
             rm.rng.generateData(rm.ARRAY_A, (short) 0, (short) (curve.KEY_BIT_LENGTH / 8 + 16));
             tmp.lock();
@@ -58,9 +99,17 @@ public class ECPoint {
             tmp.mod(curve.rBN);
             tmp.shrink();
             rm.unlock(rm.ARRAY_A);
-            point.setW(curve.G, (short) 0, (short) curve.G.length);
-            multiplication(tmp);
+            scalar.lock();
+            scalar.clone(tmp);
             tmp.unlock();
+            if (rm.ecMultKA == null) {
+                // The comb is not constant time, it is used only if there is no KeyAgreement for the secret scalar
+                multiplyGenerator(scalar);
+            } else {
+                point.setW(curve.G, (short) 0, (short) curve.G.length);
+                multiplicationKA(scalar);
+            }
+            scalar.unlock();
         }
     }
 
@@ -71,9 +120,27 @@ public class ECPoint {
      * @param other point to be copied
      */
     public void copy(ECPoint other) {
+        copyLazy(other);
+        persistValue();
+    }
+
+    /**
+     * Same as copy, but a value held in transient Jacobian coordinates is not stored into the public key, see
+     * normalize().
+     *
+     * @param other point to be copied
+     */
+    public void copyLazy(ECPoint other) {
         if (length() != other.length()) {
             ISOException.throwIt(ReturnCodes.SW_ECPOINT_INVALIDLENGTH);
         }
+        if (other.state[0] != STATE_KEY) {
+            jx.copy(other.jx);
+            jy.copy(other.jy);
+            jz.copy(other.jz);
+            state[0] = STATE_JACOBIAN;
+            return;
+        }
         byte[] pointBuffer = rm.POINT_ARRAY_A;
 
         rm.lock(pointBuffer);
@@ -93,16 +160,25 @@ public class ECPoint {
      */
     public void setW(byte[] buffer, short offset, short length) {
         point.setW(buffer, offset, length);
+        state[0] = STATE_KEY;
     }
 
     /**
-     * Returns current value of this point.
+     * Returns current value of this point. A point held in Jacobian coordinates is converted to affine coordinates
+     * first, which costs a single inversion. The converted coordinates are kept for subsequent operations if
+     * OperationSupport.EC_POINT_CACHE is set.
      *
-     * @param buffer memory array where to store serailized point value
+     * @param buffer memory array where to store serailized point value, must hold an uncompressed point
      * @param offset start offset for output serialized point
      * @return length of serialized point (number of bytes)
      */
     public short getW(byte[] buffer, short offset) {
+        if (isJacobian()) {
+            toAffine(buffer, offset);
+            point.setW(buffer, offset, curve.POINT_SIZE);
+            state[0] = OperationSupport.getInstance().EC_POINT_CACHE ? STATE_CACHED : STATE_KEY;
+            return curve.POINT_SIZE;
+        }
         return point.getW(buffer, offset);
     }
 
@@ -113,9 +189,190 @@ public class ECPoint {
      * @return point as ECPublicKey object
      */
     public ECPublicKey asPublicKey() {
+        normalize();
+        state[0] = STATE_KEY; // the key may be changed by the caller
         return point;
     }
 
+    /**
+     * Returns true if the value of this point is held in Jacobian coordinates, i.e., it was computed by software
+     * arithmetic and not yet converted to affine coordinates.
+     *
+     * @return true if the point is held in Jacobian coordinates, false otherwise
+     */
+    public boolean isJacobian() {
+        return state[0] == STATE_JACOBIAN;
+    }
+
+    /**
+     * Converts the value of this point held in Jacobian coordinates to affine coordinates stored in the public key.
+     *
+     * Public operations (copy, add, swDouble, negate, multiplications) normalize a result held in transient Jacobian
+     * coordinates, which costs an inversion, so that it is not lost on card reset. Their lazy variants (copyLazy,
+     * addLazy, swDoubleLazy, negateLazy) skip it to let chains of operations pay a single inversion. After a chain of
+     * lazy operations, the caller has to call normalize() (or read the value by getW) before the value is needed
+     * across a card reset.
+     */
+    public void normalize() {
+        if (!isJacobian()) {
+            return;
+        }
+        byte[] pointBuffer = rm.POINT_ARRAY_A;
+
+        rm.lock(pointBuffer);
+        getW(pointBuffer, (short) 0);
+        rm.unlock(pointBuffer);
+    }
+
+    /**
+     * Stores the value of this point held only in transient Jacobian coordinates into the public key, so that a result
+     * of software arithmetic is not lost on card reset. The point at infinity cannot be stored and is kept.
+     */
+    private void persistValue() {
+        if (state[0] == STATE_JACOBIAN && JCSystem.isTransient(state) != JCSystem.NOT_A_TRANSIENT_OBJECT
+                && !jz.isZero()) {
+            normalize();
+        }
+    }
+
+    /**
+     * Loads the value of this point into the Jacobian coordinates before they are modified, decoding the public key
+     * unless the coordinates already hold the value. The public key becomes stale.
+     */
+    private void toJacobian() {
+        if (state[0] != STATE_KEY) {
+            state[0] = STATE_JACOBIAN;
+            return;
+        }
+        byte[] pointBuffer = rm.POINT_ARRAY_A;
+
+        rm.lock(pointBuffer);
+        point.getW(pointBuffer, (short) 0);
+        loadAffine(pointBuffer, (short) 0);
+        rm.unlock(pointBuffer);
+    }
+
+    /**
+     * Sets the Jacobian coordinates of this point to a point in affine coordinates serialized in uncompressed form.
+     */
+    private void loadAffine(byte[] buffer, short offset) {
+        jx.fromByteArray(buffer, (short) (offset + 1), curve.COORD_SIZE);
+        jy.fromByteArray(buffer, (short) (offset + 1 + curve.COORD_SIZE), curve.COORD_SIZE);
+        jz.set(ResourceManager.ONE_COORD);
+        state[0] = STATE_JACOBIAN;
+    }
+
+    /**
+     * Sets this point to the point at infinity held in Jacobian coordinates.
+     */
+    private void setInfinity() {
+        jz.zero();
+        state[0] = STATE_JACOBIAN;
+    }
+
+    /**
+     * Scales the coordinates of this point to Z = 1. Uses a single inversion unless Z is already 1.
+     */
+    private void normalizeCoordinates() {
+        if (jz.isOne()) {
+            return;
+        }
+        FieldElement zInv = curve.feA;
+
+        zInv.lock();
+        zInv.copy(jz);
+        if (zInv.isZero()) {
+            zInv.unlock();
+            ISOException.throwIt(ReturnCodes.SW_ECPOINT_INVALID); // point at infinity
+        }
+        zInv.inv();
+        scaleCoordinates(zInv);
+        zInv.unlock();
+    }
+
+    /**
+     * Scales the coordinates of this point to Z = 1 given the inverse of Z.
+     *
+     * @param zInv inverse of Z, must not be curve.feB
+     */
+    private void scaleCoordinates(FieldElement zInv) {
+        FieldElement tmp = curve.feB;
+
+        tmp.lock();
+        tmp.copy(zInv);
+        tmp.mult(tmp);
+        jx.mult(tmp);
+        tmp.mult(zInv);
+        jy.mult(tmp);
+        tmp.unlock();
+        jz.set(ResourceManager.ONE_COORD);
+    }
+
+    /**
+     * Scales the coordinates of count points held in Jacobian coordinates to Z = 1 using Montgomery's trick, i.e.,
+     * a single inversion and 3 * (count - 1) multiplications for all the points instead of an inversion per point.
+     * Points which are not held in Jacobian coordinates or are at infinity are kept. The points must be distinct
+     * objects of the same curve.
+     *
+     * @param points points to normalize
+     * @param count number of points to normalize
+     * @param products array of at least count field elements of the curve used to store the partial products, must
+     *                 not be the field element views of the curve temporaries
+     */
+    public static void normalizeBatch(ECPoint[] points, short count, FieldElement[] products) {
+        if (count <= 0) {
+            return;
+        }
+
+        // products[i] = Z_0 * ... * Z_i, skipping the points which are kept
+        for (short i = 0; i < count; i++) {
+            FieldElement product = products[i];
+            if (i == 0) {
+                product.set(ResourceManager.ONE_COORD);
+            } else {
+                product.copy(products[(short) (i - 1)]);
+            }
+            if (points[i].needsScaling()) {
+                product.mult(points[i].jz);
+            }
+        }
+
+        FieldElement inverse = products[(short) (count - 1)];
+        inverse.inv();
+
+        // inverse = (Z_0 * ... * Z_i)^(-1) at the start of each step
+        for (short i = (short) (count - 1); i > 0; i--) {
+            if (!points[i].needsScaling()) {
+                continue;
+            }
+            FieldElement zInv = products[(short) (i - 1)];
+            zInv.mult(inverse);
+            inverse.mult(points[i].jz);
+            points[i].scaleCoordinates(zInv);
+        }
+        if (points[0].needsScaling()) {
+            points[0].scaleCoordinates(inverse);
+        }
+    }
+
+    /**
+     * Returns true if normalizeBatch has to scale the coordinates of this point.
+     */
+    private boolean needsScaling() {
+        return state[0] == STATE_JACOBIAN && !jz.isOne() && !jz.isZero();
+    }
+
+    /**
+     * Serializes the affine value of this point held in Jacobian coordinates.
+     */
+    private void toAffine(byte[] buffer, short offset) {
+        normalizeCoordinates();
+
+        buffer[offset] = (byte) 0x04;
+        jx.prependZeros(buffer, (short) (offset + 1));
+        jy.prependZeros(buffer, (short) (offset + 1 + curve.COORD_SIZE));
+    }
+
     /**
      * Returns curve associated with this point. No copy of curve is made
      * before return, so change of returned object will also change curve for
@@ -135,10 +392,15 @@ public class ECPoint {
      * @return length of X coordinate (in bytes)
      */
     public short getX(byte[] buffer, short offset) {
+        if (state[0] != STATE_KEY) {
+            normalizeCoordinates();
+            jx.prependZeros(buffer, offset);
+            return curve.COORD_SIZE;
+        }
         byte[] pointBuffer = rm.POINT_ARRAY_A;
 
         rm.lock(pointBuffer);
-        point.getW(pointBuffer, (short) 0);
+        getW(pointBuffer, (short) 0);
         Util.arrayCopyNonAtomic(pointBuffer, (short) 1, buffer, offset, curve.COORD_SIZE);
         rm.unlock(pointBuffer);
         return curve.COORD_SIZE;
@@ -152,10 +414,15 @@ public class ECPoint {
      * @return length of Y coordinate (in bytes)
      */
     public short getY(byte[] buffer, short offset) {
+        if (state[0] != STATE_KEY) {
+            normalizeCoordinates();
+            jy.prependZeros(buffer, offset);
+            return curve.COORD_SIZE;
+        }
         byte[] pointBuffer = rm.POINT_ARRAY_A;
 
         rm.lock(pointBuffer);
-        point.getW(pointBuffer, (short) 0);
+        getW(pointBuffer, (short) 0);
         Util.arrayCopyNonAtomic(pointBuffer, (short) (1 + curve.COORD_SIZE), buffer, offset, curve.COORD_SIZE);
         rm.unlock(pointBuffer);
         return curve.COORD_SIZE;
@@ -163,55 +430,101 @@ public class ECPoint {
 
     /**
      * Double this point. Pure implementation without KeyAgreement.
+     *
+     * The point is doubled in Jacobian coordinates without an inversion and is converted to affine coordinates only
+     * when its value is read, or right away if the coordinates are transient.
      */
     public void swDouble() {
-        byte[] pointBuffer = rm.POINT_ARRAY_A;
-        BigNat pX = rm.EC_BN_B;
-        BigNat pY = rm.EC_BN_C;
-        BigNat lambda = rm.EC_BN_D;
-        BigNat tmp = rm.EC_BN_E;
-
-        rm.lock(pointBuffer);
-        getW(pointBuffer, (short) 0);
-
-        pX.lock();
-        pX.fromByteArray(pointBuffer, (short) 1, curve.COORD_SIZE);
-
-        pY.lock();
-        pY.fromByteArray(pointBuffer, (short) (1 + curve.COORD_SIZE), curve.COORD_SIZE);
+        swDoubleLazy();
+        persistValue();
+    }
 
-        lambda.lock();
-        lambda.clone(pX);
-        lambda.modSq(curve.pBN);
-        lambda.modMult(ResourceManager.THREE, curve.pBN);
-        lambda.modAdd(curve.aBN, curve.pBN);
+    /**
+     * Same as swDouble, but a result held in transient Jacobian coordinates is not stored into the public key, see
+     * normalize().
+     */
+    public void swDoubleLazy() {
+        FieldElement zz = curve.feA;
+        FieldElement yy = curve.feB;
+        FieldElement s = curve.feC;
+        FieldElement m = curve.feD;
+        FieldElement tmp = curve.feE;
+
+        toJacobian();
+        if (jz.isZero()) {
+            return;
+        }
 
+        // The formulas run in the curve temporaries and each coordinate is written once at the end
+        zz.lock();
+        zz.copy(jz);
+        zz.mult(zz);
+
+        // S = 4 X Y^2
+        yy.lock();
+        yy.copy(jy);
+        yy.mult(yy);
+        s.lock();
+        s.copy(jx);
+        s.mult(yy);
+        s.add(s);
+        s.add(s);
+
+        // 8 Y^4
+        yy.mult(yy);
+        yy.add(yy);
+        yy.add(yy);
+        yy.add(yy);
+
+        // M = 3 X^2 + a Z^4
+        m.lock();
         tmp.lock();
-        tmp.clone(pY);
-        tmp.modAdd(tmp, curve.pBN);
-        tmp.modInv(curve.pBN);
-        lambda.modMult(tmp, curve.pBN);
-        tmp.clone(lambda);
-        tmp.modSq(curve.pBN);
-        tmp.modSub(pX, curve.pBN);
-        tmp.modSub(pX, curve.pBN);
-        tmp.prependZeros(curve.COORD_SIZE, pointBuffer, (short) 1);
-
-        tmp.modSub(pX, curve.pBN);
-        pX.unlock();
-        tmp.modMult(lambda, curve.pBN);
-        lambda.unlock();
-        tmp.modAdd(pY, curve.pBN);
-        tmp.modNegate(curve.pBN);
-        pY.unlock();
-        tmp.prependZeros(curve.COORD_SIZE, pointBuffer, (short) (1 + curve.COORD_SIZE));
+        m.copy(jx);
+        if (curve.aIsMinusThree) {
+            // M = 3 (X - Z^2) (X + Z^2)
+            m.subtract(zz);
+            tmp.copy(jx);
+            tmp.add(zz);
+            m.mult(tmp);
+        } else {
+            m.mult(m);
+        }
+        tmp.copy(m);
+        m.add(tmp);
+        m.add(tmp);
+        if (!curve.aIsMinusThree && !curve.aBN.isZero()) {
+            zz.mult(zz);
+            tmp.set(curve.aBN);
+            tmp.multAdd(zz, m);
+            m.copy(tmp);
+        }
         tmp.unlock();
 
-        setW(pointBuffer, (short) 0, curve.POINT_SIZE);
-        rm.unlock(pointBuffer);
+        // Z_3 = 2 Y Z
+        zz.copy(jy);
+        zz.mult(jz);
+        zz.add(zz);
+        zz.reduce();
+        jz.copy(zz);
+
+        // X_3 = M^2 - 2 S
+        zz.copy(m);
+        zz.mult(zz);
+        zz.subtract(s);
+        zz.subtract(s);
+        zz.reduce();
+
+        // Y_3 = M (S - X_3) - 8 Y^4
+        s.subtract(zz);
+        m.multSubtract(s, yy);
+        s.unlock();
+        yy.unlock();
+        jx.copy(zz);
+        zz.unlock();
+        jy.copy(m);
+        m.unlock();
     }
 
-
     /**
      * Doubles the current value of this point.
      */
@@ -228,6 +541,17 @@ public class ECPoint {
      * @param other point to be added to this.
      */
     public void add(ECPoint other) {
+        addLazy(other);
+        persistValue();
+    }
+
+    /**
+     * Same as add, but a result held in transient Jacobian coordinates is not stored into the public key, see
+     * normalize().
+     *
+     * @param other point to be added to this.
+     */
+    public void addLazy(ECPoint other) {
         if (OperationSupport.getInstance().EC_HW_ADD) {
             hwAdd(other);
         } else {
@@ -238,120 +562,172 @@ public class ECPoint {
     /**
      * Implements adding of two points without ALG_EC_PACE_GM.
      *
+     * The sum is computed in Jacobian coordinates without an inversion (using mixed addition if the other point is
+     * held in affine coordinates) and is converted to affine coordinates only when its value is read.
+     *
      * @param other point to be added to this.
      */
     private void swAdd(ECPoint other) {
-        boolean samePoint = this == other || isEqual(other);
-        if (samePoint && OperationSupport.getInstance().EC_HW_XY) {
-            multiplication(ResourceManager.TWO);
+        if (this == other) {
+            swDoubleLazy();
             return;
         }
-
-        byte[] pointBuffer = rm.POINT_ARRAY_A;
-        BigNat xR = rm.EC_BN_B;
-        BigNat yR = rm.EC_BN_C;
-        BigNat xP = rm.EC_BN_D;
-        BigNat yP = rm.EC_BN_E;
-        BigNat xQ = rm.EC_BN_F;
-        BigNat nominator = rm.EC_BN_B;
-        BigNat denominator = rm.EC_BN_C;
-        BigNat lambda = rm.EC_BN_A;
-
-        rm.lock(pointBuffer);
-        point.getW(pointBuffer, (short) 0);
-        xP.lock();
-        xP.setSize(curve.COORD_SIZE);
-        xP.fromByteArray(pointBuffer, (short) 1, curve.COORD_SIZE);
-        yP.lock();
-        yP.setSize(curve.COORD_SIZE);
-        yP.fromByteArray(pointBuffer, (short) (1 + curve.COORD_SIZE), curve.COORD_SIZE);
-        rm.unlock(pointBuffer);
-
-
-        // l = (y_q-y_p)/(x_q-x_p))
-        // x_r = l^2 - x_p -x_q
-        // y_r = l(x_p-x_r)-y_p
-
-        // P + Q = R
-        nominator.lock();
-        denominator.lock();
-        if (samePoint) {
-            // lambda = (3(x_p^2)+a)/(2y_p)
-            // (3(x_p^2)+a)
-            nominator.clone(xP);
-            nominator.modSq(curve.pBN);
-            nominator.modMult(ResourceManager.THREE, curve.pBN);
-            nominator.modAdd(curve.aBN, curve.pBN);
-            // (2y_p)
-            denominator.clone(yP);
-            denominator.modMult(ResourceManager.TWO, curve.pBN);
-            denominator.modInv(curve.pBN);
-
-        } else {
-            // lambda = (y_q-y_p) / (x_q-x_p) mod p
+        if (other.state[0] == STATE_KEY) {
+            // Decode the other point into a buffer, it is not modified
+            byte[] pointBuffer = rm.POINT_ARRAY_B;
             rm.lock(pointBuffer);
             other.point.getW(pointBuffer, (short) 0);
-            xQ.lock();
-            xQ.setSize(curve.COORD_SIZE);
-            xQ.fromByteArray(pointBuffer, (short) 1, other.curve.COORD_SIZE);
-            nominator.setSize(curve.COORD_SIZE);
-            nominator.fromByteArray(pointBuffer, (short) (1 + curve.COORD_SIZE), curve.COORD_SIZE);
+            swAddAffine(pointBuffer, (short) 0);
             rm.unlock(pointBuffer);
+            return;
+        }
+        if (other.jz.isZero()) {
+            return;
+        }
+        toJacobian();
+        if (jz.isZero()) {
+            copyLazy(other);
+            return;
+        }
 
-            nominator.mod(curve.pBN);
-
-            nominator.modSub(yP, curve.pBN);
+        FieldElement h = curve.feA;
+        FieldElement r = curve.feB;
 
-            // (x_q-x_p)
-            denominator.clone(xQ);
-            denominator.mod(curve.pBN);
-            denominator.modSub(xP, curve.pBN);
-            denominator.modInv(curve.pBN);
+        h.lock();
+        h.copy(other.jx);
+        r.lock();
+        r.copy(other.jy);
+        boolean samePoint = !swAddCoordinates(h, r, other.state[0] == STATE_CACHED ? null : other.jz);
+        r.unlock();
+        h.unlock();
+        if (samePoint) {
+            copyLazy(other);
+            swDoubleLazy();
         }
+    }
 
-        lambda.lock();
-        lambda.clone(nominator);
-        lambda.modMult(denominator, curve.pBN);
-        nominator.unlock();
-        denominator.unlock();
+    /**
+     * Adds a point in affine coordinates serialized in uncompressed form to this point using mixed addition in
+     * Jacobian coordinates.
+     *
+     * @param buffer array with the serialized point
+     * @param offset start offset of the serialized point
+     */
+    private void swAddAffine(byte[] buffer, short offset) {
+        toJacobian();
+        if (jz.isZero()) {
+            loadAffine(buffer, offset);
+            return;
+        }
 
-        // (x_p, y_p) + (x_q, y_q) = (x_r, y_r)
-        // lambda = (y_q - y_p) / (x_q - x_p)
+        FieldElement h = curve.feA;
+        FieldElement r = curve.feB;
 
-        // x_r = lambda^2 - x_p - x_q
-        xR.lock();
+        h.lock();
+        h.fromByteArray(buffer, (short) (offset + 1), curve.COORD_SIZE);
+        r.lock();
+        r.fromByteArray(buffer, (short) (offset + 1 + curve.COORD_SIZE), curve.COORD_SIZE);
+        boolean samePoint = !swAddCoordinates(h, r, null);
+        r.unlock();
+        h.unlock();
         if (samePoint) {
-            rm.lock(pointBuffer);
-            short len = multXKA(ResourceManager.TWO, pointBuffer, (short) 0);
-            xR.fromByteArray(pointBuffer, (short) 0, len);
-            rm.unlock(pointBuffer);
-        } else {
-            xR.clone(lambda);
-            xR.modSq(curve.pBN);
-            xR.modSub(xP, curve.pBN);
-            xR.modSub(xQ, curve.pBN);
+            loadAffine(buffer, offset);
+            swDoubleLazy();
         }
-        xQ.unlock();
+    }
 
-        // y_r = lambda(x_p - x_r) - y_p
-        yR.lock();
-        yR.clone(xP);
-        xP.unlock();
-        yR.modSub(xR, curve.pBN);
-        yR.modMult(lambda, curve.pBN);
-        lambda.unlock();
-        yR.modSub(yP, curve.pBN);
-        yP.unlock();
+    /**
+     * Adds the point (X_2, Y_2, Z_2) to this point held in Jacobian coordinates, which must not be the point at
+     * infinity. The formulas run in the curve temporaries and each coordinate of this point is written once.
+     *
+     * @param h X_2 held in curve.feA, overwritten
+     * @param r Y_2 held in curve.feB, overwritten
+     * @param z Z_2 or null if the point is affine (Z_2 = 1), which saves the scaling of this point
+     * @return false if both points are equal and the result has to be computed by doubling, true otherwise
+     */
+    private boolean swAddCoordinates(FieldElement h, FieldElement r, FieldElement z) {
+        FieldElement tmp = curve.feC;
+        FieldElement u1 = curve.feD;
+        FieldElement s1 = curve.feE;
 
-        rm.lock(pointBuffer);
-        pointBuffer[0] = (byte) 0x04;
-        // If x_r.length() and y_r.length() is smaller than curve.COORD_SIZE due to leading zeroes which were shrunk before, then we must add these back
-        xR.prependZeros(curve.COORD_SIZE, pointBuffer, (short) 1);
-        xR.unlock();
-        yR.prependZeros(curve.COORD_SIZE, pointBuffer, (short) (1 + curve.COORD_SIZE));
-        yR.unlock();
-        setW(pointBuffer, (short) 0, curve.POINT_SIZE);
-        rm.unlock(pointBuffer);
+        // U_2 = X_2 Z_1^2, S_2 = Y_2 Z_1^3
+        tmp.lock();
+        tmp.copy(jz);
+        tmp.mult(tmp);
+        h.mult(tmp);
+        tmp.mult(jz);
+        r.mult(tmp);
+
+        // U_1 = X_1 Z_2^2, S_1 = Y_1 Z_2^3
+        u1.lock();
+        u1.copy(jx);
+        s1.lock();
+        s1.copy(jy);
+        if (z != null) {
+            tmp.copy(z);
+            tmp.mult(tmp);
+            u1.mult(tmp);
+            tmp.mult(z);
+            s1.mult(tmp);
+        }
+
+        // H = U_2 - U_1, r = S_2 - S_1
+        h.subtract(u1);
+        r.subtract(s1);
+        if (h.isZero()) {
+            tmp.unlock();
+            s1.unlock();
+            u1.unlock();
+            if (r.isZero()) {
+                return false;
+            }
+            jz.zero();
+            return true;
+        }
+
+        // Z_3 = Z_1 Z_2 H
+        tmp.copy(jz);
+        tmp.mult(h);
+        if (z != null) {
+            tmp.mult(z);
+        }
+        jz.copy(tmp);
+
+        // V = U_1 H^2, H^3
+        tmp.copy(h);
+        tmp.mult(tmp);
+        u1.mult(tmp);
+        h.mult(tmp);
+
+        // X_3 = r^2 - H^3 - 2 V
+        tmp.copy(r);
+        tmp.mult(tmp);
+        tmp.subtract(h);
+        tmp.subtract(u1);
+        tmp.subtract(u1);
+        tmp.reduce();
+
+        // Y_3 = r (V - X_3) - S_1 H^3
+        u1.subtract(tmp);
+        s1.mult(h);
+        r.multSubtract(u1, s1);
+        s1.unlock();
+        u1.unlock();
+        jx.copy(tmp);
+        tmp.unlock();
+        jy.copy(r);
+        return true;
+    }
+
+    /**
+     * Returns the Montgomery context of the curve if modular multiplication is computed in software and p has no
+     * special form reducing faster, null otherwise.
+     */
+    private MontgomeryContext swMontgomery() {
+        if (OperationSupport.getInstance().RSA_SQ || curve.pFast.form != FastReductionContext.FORM_GENERIC) {
+            return null;
+        }
+        return curve.getMontgomeryContext();
     }
 
     /**
@@ -390,8 +766,21 @@ public class ECPoint {
     public void multiplication(BigNat scalar) {
         if (OperationSupport.getInstance().EC_SW_DOUBLE && scalar.equals(ResourceManager.TWO)) {
             swDouble();
-        // } else if (rm.ecMultKA.getAlgorithm() == KeyAgreement.ALG_EC_SVDP_DH_PLAIN_XY) {
-        } else if (rm.ecMultKA.getAlgorithm() == (byte) 6) {
+        } else if (OperationSupport.getInstance().EC_SW_MULT) {
+            swMultiplication(scalar);
+        } else {
+            multiplicationKA(scalar);
+        }
+    }
+
+    /**
+     * Multiply value of this point by provided scalar using KeyAgreement. Stores the result into this point.
+     *
+     * @param scalar value of scalar for multiplication
+     */
+    private void multiplicationKA(BigNat scalar) {
+        // if (rm.ecMultKA.getAlgorithm() == KeyAgreement.ALG_EC_SVDP_DH_PLAIN_XY) {
+        if (rm.ecMultKA.getAlgorithm() == (byte) 6) {
             multXY(scalar);
         //} else if (rm.ecMultKA.getAlgorithm() == KeyAgreement.ALG_EC_SVDP_DH_PLAIN) {
         } else if (rm.ecMultKA.getAlgorithm() == (byte) 3) {
@@ -401,6 +790,322 @@ public class ECPoint {
         }
     }
 
+    /**
+     * Multiply value of this point by provided scalar without KeyAgreement. Stores the result into this point.
+     *
+     * The scalar is recoded to width-w non-adjacent form (w = ResourceManager.WNAF_WIDTH), so at most one in w
+     * digits is non-zero and every non-zero digit is odd. The odd multiples P, 3P, ..., (2^(w-1) - 1)P are
+     * precomputed into the table of the curve and the result is computed by a left-to-right double-and-add in
+     * Jacobian coordinates, subtracting a table point for negative digits. The result is converted to affine
+     * coordinates only when its value is read, or right away if the coordinates are transient.
+     *
+     * The additions follow the non-zero digits of the scalar, so the running time and the power trace depend on the
+     * scalar. The KeyAgreement path of multiplication should be preferred for secret scalars on cards providing it.
+     *
+     * @param scalar value of scalar for multiplication, must not be held in EC_BN_A-E used by the point arithmetic
+     */
+    public void swMultiplication(BigNat scalar) {
+        byte[] digits = rm.getWnafArray();
+        ECPoint[] table = curve.getMultTable();
+        ECPoint acc = workPoint();
+
+        rm.lock(digits);
+        short i = wnaf(scalar, digits);
+        if (i == 0) {
+            setInfinity();
+            clearDigits(digits);
+            rm.unlock(digits);
+            return;
+        }
+
+        // P, 3P, 5P, ... using 2P held in the accumulator
+        table[0].copyLazy(this);
+        table[0].toJacobian();
+        acc.copyLazy(table[0]);
+        acc.swDoubleLazy();
+        for (short j = 1; j < (short) table.length; j++) {
+            table[j].copyLazy(table[(short) (j - 1)]);
+            table[j].swAdd(acc);
+        }
+
+        // the most significant digit is positive
+        i--;
+        acc.copyLazy(table[(short) ((short) (digits[i] - 1) >> 1)]);
+        while (i > 0) {
+            i--;
+            acc.swDoubleLazy();
+            byte digit = digits[i];
+            if (digit > 0) {
+                acc.swAdd(table[(short) ((short) (digit - 1) >> 1)]);
+            } else if (digit < 0) {
+                ECPoint tablePoint = table[(short) ((short) (-digit - 1) >> 1)];
+                tablePoint.negateLazy();
+                acc.swAdd(tablePoint);
+                tablePoint.negateLazy();
+            }
+        }
+        clearDigits(digits);
+        rm.unlock(digits);
+        storeResult(acc);
+    }
+
+    /**
+     * Erases the recoded scalar, so that it does not outlive the multiplication.
+     */
+    private static void clearDigits(byte[] digits) {
+        Util.arrayFillNonAtomic(digits, (short) 0, (short) digits.length, (byte) 0);
+    }
+
+    /**
+     * Returns the point accumulating the result of a scalar multiplication. It is this point if its coordinates are
+     * transient, otherwise a RAM point of the curve, so that a chain of operations on a point in EEPROM writes the
+     * coordinates only once.
+     */
+    private ECPoint workPoint() {
+        if (JCSystem.isTransient(state) != JCSystem.NOT_A_TRANSIENT_OBJECT) {
+            return this;
+        }
+        return curve.getWorkPoint();
+    }
+
+    /**
+     * Stores the result accumulated in the point returned by workPoint into this point.
+     */
+    private void storeResult(ECPoint acc) {
+        if (acc != this) {
+            copyLazy(acc);
+        }
+        persistValue();
+    }
+
+    /**
+     * Multiply the generator G of the curve by provided scalar. Stores the result into this point.
+     *
+     * Uses a fixed-base comb with ECCurve.COMB_TEETH teeth spaced ECCurve.COMB_SPACING bits apart. The sums of
+     * the multiples 2^(i * COMB_SPACING) G for all combinations of teeth are precomputed into the EEPROM table of
+     * the curve on the first call, so each call needs only COMB_SPACING - 1 doublings and at most COMB_SPACING
+     * mixed additions in Jacobian coordinates instead of a doubling per bit of the scalar.
+     *
+     * Columns of the scalar without set bits skip the addition, and the addition handles the point at infinity
+     * separately, so the running time depends on the scalar. randomize uses it only on cards without KeyAgreement.
+     *
+     * @param scalar value of scalar for multiplication, must not be held in EC_BN_A-E used by the point arithmetic
+     */
+    public void multiplyGenerator(BigNat scalar) {
+        short spacing = curve.COMB_SPACING;
+        if (scalar.bitLength() > (short) (spacing * ECCurve.COMB_TEETH)) {
+            ISOException.throwIt(ReturnCodes.SW_ECPOINT_INVALIDLENGTH);
+        }
+        ECPoint acc = workPoint();
+        if (!curve.combTableReady) {
+            acc.buildCombTable();
+        }
+
+        acc.setInfinity();
+        for (short i = (short) (spacing - 1); i >= 0; i--) {
+            acc.swDoubleLazy();
+            short index = 0;
+            for (short j = (short) (ECCurve.COMB_TEETH - 1); j >= 0; j--) {
+                index = (short) ((short) (index << 1) | scalar.getBit((short) (i + (short) (j * spacing))));
+            }
+            if (index != 0) {
+                acc.swAddAffine(curve.combTable, (short) ((short) (index - 1) * curve.POINT_SIZE));
+            }
+        }
+        storeResult(acc);
+    }
+
+    /**
+     * Fills the comb table of the curve, entry index - 1 holds the sum of 2^(j * COMB_SPACING) G over the set bits j
+     * of index. This point is used for the computation and its value is overwritten.
+     */
+    private void buildCombTable() {
+        byte[] table = curve.getCombTable();
+        short pointSize = curve.POINT_SIZE;
+
+        setW(curve.G, (short) 0, (short) curve.G.length);
+        getW(table, (short) 0);
+        for (short j = 1; j < ECCurve.COMB_TEETH; j++) {
+            // 2^(j * COMB_SPACING) G from the previous multiple
+            short baseOffset = (short) ((short) ((short) (1 << j) - 1) * pointSize);
+            setW(table, (short) ((short) ((short) (1 << (j - 1)) - 1) * pointSize), pointSize);
+            for (short i = 0; i < curve.COMB_SPACING; i++) {
+                swDoubleLazy();
+            }
+            getW(table, baseOffset);
+
+            // Sums of the new multiple with all previous entries
+            for (short i = 1; i < (short) (1 << j); i++) {
+                setW(table, (short) ((short) (i - 1) * pointSize), pointSize);
+                swAddAffine(table, baseOffset);
+                getW(table, (short) (baseOffset + (short) (i * pointSize)));
+            }
+        }
+        curve.combTableReady = true;
+    }
+
+    /**
+     * Computes the linear combination scalars[0] * points[0] + scalars[1] * points[1] of up to two points in a single
+     * pass (Straus-Shamir trick). Stores the result into this point, which may be one of the points.
+     *
+     * The pair of scalars is recoded to joint sparse form, in which on average only half of the digit pairs are
+     * non-zero. The points P, Q, P + Q and P - Q are precomputed into the table of the curve and the result is
+     * computed by a left-to-right double-and-add in Jacobian coordinates, so the combination costs about as much
+     * as a single multiplication.
+     *
+     * @param scalars one or two scalars, must not be held in EC_BN_A-E used by the point arithmetic
+     * @param points  as many points as scalars
+     */
+    public void multiScalarMult(BigNat[] scalars, ECPoint[] points) {
+        if ((short) scalars.length != (short) points.length || scalars.length == 0 || scalars.length > 2) {
+            ISOException.throwIt(ReturnCodes.SW_OPERATION_NOT_SUPPORTED);
+        }
+        if (scalars.length == 1) {
+            copyLazy(points[0]);
+            swMultiplication(scalars[0]);
+            return;
+        }
+        byte[] digits = rm.getWnafArray();
+        ECPoint[] table = curve.getMultTable();
+
+        rm.lock(digits);
+        short i = jsf(scalars[0], scalars[1], digits);
+
+        // Q, P - Q, P, P + Q indexed by 3 u_0 + u_1 - 1 for digits u_0, u_1 of P and Q
+        table[2].copyLazy(points[0]);
+        table[0].copyLazy(points[1]);
+        table[3].copyLazy(table[2]);
+        table[3].swAdd(table[0]);
+        table[0].negateLazy();
+        table[1].copyLazy(table[2]);
+        table[1].swAdd(table[0]);
+        table[0].negateLazy();
+
+        ECPoint acc = workPoint();
+        acc.setInfinity();
+        while (i > 0) {
+            i--;
+            acc.swDoubleLazy();
+            byte digit = digits[i];
+            if (digit > 0) {
+                acc.swAdd(table[(short) (digit - 1)]);
+            } else if (digit < 0) {
+                ECPoint tablePoint = table[(short) (-digit - 1)];
+                tablePoint.negateLazy();
+                acc.swAdd(tablePoint);
+                tablePoint.negateLazy();
+            }
+        }
+        clearDigits(digits);
+        rm.unlock(digits);
+        storeResult(acc);
+    }
+
+    /**
+     * Recodes a pair of scalars to joint sparse form, least significant digit first. Digits u_0, u_1 in {-1, 0, 1}
+     * of the scalars at the same position are stored as a single digit 3 u_0 + u_1.
+     *
+     * @param scalar0 the first scalar
+     * @param scalar1 the second scalar
+     * @param digits output array of digits
+     * @return number of digits, 0 if both scalars are zero
+     */
+    private short jsf(BigNat scalar0, BigNat scalar1, byte[] digits) {
+        short bits = scalar0.bitLength();
+        if (scalar1.bitLength() > bits) {
+            bits = scalar1.bitLength();
+        }
+        if (bits >= (short) digits.length) {
+            ISOException.throwIt(ReturnCodes.SW_ECPOINT_INVALIDLENGTH);
+        }
+
+        short length = 0;
+        short carry0 = 0;
+        short carry1 = 0;
+        for (short i = 0; i <= bits; i++) {
+            // Remaining scalars including the carries mod 8
+            short l0 = (short) ((short) (lowestBits(scalar0, i) + carry0) & 7);
+            short l1 = (short) ((short) (lowestBits(scalar1, i) + carry1) & 7);
+            short u0 = jsfDigit(l0, l1);
+            short u1 = jsfDigit(l1, l0);
+            if ((short) (2 * carry0) == (short) (1 + u0)) {
+                carry0 = (short) (1 - carry0);
+            }
+            if ((short) (2 * carry1) == (short) (1 + u1)) {
+                carry1 = (short) (1 - carry1);
+            }
+            digits[i] = (byte) (3 * u0 + u1);
+            if (digits[i] != 0) {
+                length = (short) (i + 1);
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Returns the joint sparse form digit of a scalar given the remaining value l of the scalar and l' of the other
+     * scalar mod 8.
+     */
+    private static short jsfDigit(short l, short otherL) {
+        if ((short) (l & 1) == 0) {
+            return 0;
+        }
+        short u = (short) (l & 3) == 1 ? (short) 1 : (short) -1;
+        if ((l == 3 || l == 5) && (short) (otherL & 3) == 2) {
+            u = (short) -u;
+        }
+        return u;
+    }
+
+    /**
+     * Returns the three bits of scalar starting at the given position.
+     */
+    private static short lowestBits(BigNat scalar, short bitIndex) {
+        return (short) (scalar.getBit(bitIndex) | (short) (scalar.getBit((short) (bitIndex + 1)) << 1)
+                | (short) (scalar.getBit((short) (bitIndex + 2)) << 2));
+    }
+
+    /**
+     * Recodes scalar to width-w non-adjacent form (w = ResourceManager.WNAF_WIDTH) with one digit per bit, least
+     * significant digit first.
+     *
+     * @param scalar the scalar
+     * @param digits output array of digits
+     * @return number of digits, 0 if the scalar is zero
+     */
+    private short wnaf(BigNat scalar, byte[] digits) {
+        short bits = scalar.bitLength();
+        if (bits >= (short) digits.length) {
+            ISOException.throwIt(ReturnCodes.SW_ECPOINT_INVALIDLENGTH);
+        }
+        Util.arrayFillNonAtomic(digits, (short) 0, (short) (bits + 1), (byte) 0);
+
+        short length = 0;
+        short carry = 0;
+        short i = 0;
+        while (i <= bits) {
+            if (scalar.getBit(i) == carry) {
+                i++;
+                continue;
+            }
+            // The window value including the carry is odd, take it as a digit in (-2^(w-1), 2^(w-1))
+            short window = 0;
+            for (short j = (short) (ResourceManager.WNAF_WIDTH - 1); j >= 0; j--) {
+                window = (short) ((short) (window << 1) | scalar.getBit((short) (i + j)));
+            }
+            window += carry;
+            carry = 0;
+            if ((short) (window & (short) (1 << (ResourceManager.WNAF_WIDTH - 1))) != 0) {
+                window -= (short) (1 << ResourceManager.WNAF_WIDTH);
+                carry = 1;
+            }
+            digits[i] = (byte) window;
+            length = (short) (i + 1);
+            i += ResourceManager.WNAF_WIDTH;
+        }
+        return length;
+    }
+
     /**
      * Multiply this point by a given scalar and add another point to the result.
      *
@@ -472,9 +1177,7 @@ public class ECPoint {
         byte[] pointBuffer = rm.POINT_ARRAY_B;
 
         rm.lock(pointBuffer);
-        scalar.prependZeros((short) curve.r.length, pointBuffer, (short) 0);
-        curve.disposablePriv.setS(pointBuffer, (short) 0, (short) curve.r.length);
-        rm.ecMultKA.init(curve.disposablePriv);
+        initMultKA(scalar, pointBuffer);
 
         short len = getW(pointBuffer, (short) 0);
         len = rm.ecMultKA.generateSecret(pointBuffer, (short) 0, len, outBuffer, outBufferOffset);
@@ -482,21 +1185,140 @@ public class ECPoint {
         return len;
     }
 
+    /**
+     * Multiplies count points by the same scalar and stores the results into the points.
+     *
+     * The scalar is set and the KeyAgreement engine is initialized once for all the points, which are then
+     * multiplied by a stream of generateSecret calls. X-only KeyAgreement needs two passes over the points, for
+     * scalar and scalar + 1, with y recovered as in multXRecoverY, so it is batched only if EC_HW_X_ECDSA is not set.
+     * Other configurations multiply the points one by one.
+     *
+     * @param scalar value of scalar for multiplication, must not be any of rm.EC_BN_A-E
+     * @param points distinct points to be multiplied
+     * @param count number of points to be multiplied
+     * @param xs array of at least count BigNats of coordinate length used to keep the x coordinates between the
+     *           passes of X-only KeyAgreement, must not be the temporaries of the resource manager
+     */
+    public static void multiplicationBatch(BigNat scalar, ECPoint[] points, short count, BigNat[] xs) {
+        if (count <= 0) {
+            return;
+        }
+        OperationSupport os = OperationSupport.getInstance();
+        KeyAgreement ecMultKA = points[0].rm.ecMultKA;
+        if (!os.EC_SW_MULT && !(os.EC_SW_DOUBLE && scalar.equals(ResourceManager.TWO))) {
+            // if (ecMultKA.getAlgorithm() == KeyAgreement.ALG_EC_SVDP_DH_PLAIN_XY) {
+            if (ecMultKA.getAlgorithm() == (byte) 6) {
+                multXYBatch(scalar, points, count);
+                return;
+            }
+            // if (ecMultKA.getAlgorithm() == KeyAgreement.ALG_EC_SVDP_DH_PLAIN && !os.EC_HW_X_ECDSA) {
+            if (ecMultKA.getAlgorithm() == (byte) 3 && !os.EC_HW_X_ECDSA) {
+                multXRecoverYBatch(scalar, points, count, xs);
+                return;
+            }
+        }
+        for (short i = 0; i < count; i++) {
+            points[i].multiplication(scalar);
+        }
+    }
+
+    /**
+     * Multiplies count points by the same scalar using XY key agreement initialized once.
+     */
+    private static void multXYBatch(BigNat scalar, ECPoint[] points, short count) {
+        ECPoint first = points[0];
+        ResourceManager rm = first.rm;
+        byte[] pointBuffer = rm.POINT_ARRAY_A;
+        byte[] pointBuffer2 = rm.POINT_ARRAY_B;
+
+        rm.lock(pointBuffer2);
+        first.initMultKA(scalar, pointBuffer2);
+        rm.lock(pointBuffer);
+        for (short i = 0; i < count; i++) {
+            short len = points[i].getW(pointBuffer2, (short) 0);
+            len = rm.ecMultKA.generateSecret(pointBuffer2, (short) 0, len, pointBuffer, (short) 0);
+            points[i].setW(pointBuffer, (short) 0, len);
+        }
+        rm.unlock(pointBuffer);
+        rm.unlock(pointBuffer2);
+    }
+
+    /**
+     * Multiplies count points by the same scalar using X-only key agreement initialized once for the scalar and once
+     * for scalar + 1. The x coordinates of the multiples are kept in xs between the two passes.
+     */
+    private static void multXRecoverYBatch(BigNat scalar, ECPoint[] points, short count, BigNat[] xs) {
+        ECPoint first = points[0];
+        ResourceManager rm = first.rm;
+        short coordSize = first.curve.COORD_SIZE;
+        byte[] pointBuffer = rm.POINT_ARRAY_B;
+        byte[] resultBuffer = rm.ARRAY_A;
+        BigNat xQ = rm.EC_BN_B;
+        BigNat xR = rm.EC_BN_C;
+
+        // x(Q_i) with Q_i = scalar * P_i, P_i is kept in the public key
+        rm.lock(pointBuffer);
+        first.initMultKA(scalar, pointBuffer);
+        rm.lock(resultBuffer);
+        for (short i = 0; i < count; i++) {
+            ECPoint point = points[i];
+            short len = point.getW(pointBuffer, (short) 0);
+            rm.ecMultKA.generateSecret(pointBuffer, (short) 0, len, resultBuffer, (short) 0);
+            xs[i].fromByteArray(resultBuffer, (short) 0, coordSize); // see multXKA for the length
+        }
+        rm.unlock(resultBuffer);
+        scalar.increment();
+        first.initMultKA(scalar, pointBuffer);
+        scalar.decrement(); // keep the original
+        rm.unlock(pointBuffer);
+
+        // x(Q_i + P_i), then y(Q_i)
+        xQ.lock();
+        xR.lock();
+        for (short i = 0; i < count; i++) {
+            ECPoint point = points[i];
+            rm.lock(pointBuffer);
+            short len = point.getW(pointBuffer, (short) 0);
+            rm.lock(resultBuffer);
+            rm.ecMultKA.generateSecret(pointBuffer, (short) 0, len, resultBuffer, (short) 0);
+            rm.unlock(pointBuffer);
+            xR.fromByteArray(resultBuffer, (short) 0, coordSize);
+            rm.unlock(resultBuffer);
+            xQ.clone(xs[i]);
+            point.recoverY(xQ, xR);
+        }
+        xR.unlock();
+        xQ.unlock();
+    }
+
+    /**
+     * Sets the scalar as the private key of the curve and initializes the multiplication KeyAgreement engine with it.
+     *
+     * @param scalar value of scalar for multiplication
+     * @param buffer array of at least curve.r.length bytes used to serialize the scalar
+     */
+    private void initMultKA(BigNat scalar, byte[] buffer) {
+        scalar.prependZeros((short) curve.r.length, buffer, (short) 0);
+        curve.disposablePriv.setS(buffer, (short) 0, (short) curve.r.length);
+        rm.ecMultKA.init(curve.disposablePriv);
+    }
+
     /**
      * Multiply value of this point by provided scalar using X-only key agreement. Stores the result into this point.
      *
      * @param scalar value of scalar for multiplication
      */
     private void multX(BigNat scalar) {
+        if (!OperationSupport.getInstance().EC_HW_X_ECDSA) {
+            multXRecoverY(scalar);
+            return;
+        }
         byte[] pointBuffer = rm.POINT_ARRAY_A;
         byte[] pointBuffer2 = rm.POINT_ARRAY_B;
         byte[] resultBuffer = rm.ARRAY_A;
         BigNat x = rm.EC_BN_B;
         BigNat ySq = rm.EC_BN_C;
         BigNat y = rm.EC_BN_D;
-        BigNat lambda = rm.EC_BN_E;
-        BigNat tmp = rm.EC_BN_F;
-        BigNat denominator = rm.EC_BN_D;
 
         rm.lock(pointBuffer);
         short len = multXKA(scalar, pointBuffer, (short) 0);
@@ -507,14 +1329,12 @@ public class ECPoint {
         // Solve for Y in Weierstrass equation: Y^2 = X^3 + XA + B = x(x^2+A)+B
         ySq.lock();
         ySq.clone(x);
-        ySq.modExp(ResourceManager.TWO, curve.pBN);
-        ySq.modAdd(curve.aBN, curve.pBN);
-        ySq.modMult(x, curve.pBN);
-        ySq.modAdd(curve.bBN, curve.pBN);
+        ySq.modMultAdd(ySq, curve.aBN, curve.pBN);
+        ySq.modMultAdd(x, curve.bBN, curve.pBN);
         y.lock();
         y.clone(ySq);
         ySq.unlock();
-        y.modSqrt(curve.pBN);
+        y.modSqrt(curve.pBN, swMontgomery());
 
         // Construct public key with <x, y>
         rm.lock(pointBuffer);
@@ -524,71 +1344,102 @@ public class ECPoint {
         y.prependZeros(curve.COORD_SIZE, pointBuffer, (short) (1 + curve.COORD_SIZE));
         y.unlock();
 
-        boolean negate;
-        if (OperationSupport.getInstance().EC_HW_X_ECDSA) {
-            rm.lock(pointBuffer2);
-            getW(pointBuffer2, (short) 0);
-            curve.disposablePriv.setG(pointBuffer2, (short) 0, curve.POINT_SIZE);
-            curve.disposablePub.setG(pointBuffer2, (short) 0, curve.POINT_SIZE);
-            rm.unlock(pointBuffer2);
+        rm.lock(pointBuffer2);
+        getW(pointBuffer2, (short) 0);
+        curve.disposablePriv.setG(pointBuffer2, (short) 0, curve.POINT_SIZE);
+        curve.disposablePub.setG(pointBuffer2, (short) 0, curve.POINT_SIZE);
+        rm.unlock(pointBuffer2);
 
-            setW(pointBuffer, (short) 0, curve.POINT_SIZE);
+        setW(pointBuffer, (short) 0, curve.POINT_SIZE);
 
-            // Check if <x, y> corresponds to the "secret" (i.e., our scalar)
-            rm.lock(resultBuffer);
-            scalar.prependZeros((short) curve.r.length, resultBuffer, (short) 0);
-            curve.disposablePriv.setS(resultBuffer, (short) 0, (short) curve.r.length);
-            curve.disposablePub.setW(pointBuffer, (short) 0, curve.POINT_SIZE);
-            negate = !SignVerifyECDSA(curve.disposablePriv, curve.disposablePub, rm.verifyEcdsa, resultBuffer);
-            rm.unlock(resultBuffer);
-        } else {
-            // Check that (<x, y> + P)_x == ((scalar + 1)P)_x
-            x.lock();
-            rm.lock(resultBuffer);
-            scalar.increment();
-            len = multXKA(scalar, resultBuffer, (short) 0);
-            x.fromByteArray(resultBuffer, (short) 0, len);
-            rm.unlock(resultBuffer);
-            scalar.decrement(); // keep the original
+        // Check if <x, y> corresponds to the "secret" (i.e., our scalar)
+        rm.lock(resultBuffer);
+        scalar.prependZeros((short) curve.r.length, resultBuffer, (short) 0);
+        curve.disposablePriv.setS(resultBuffer, (short) 0, (short) curve.r.length);
+        curve.disposablePub.setW(pointBuffer, (short) 0, curve.POINT_SIZE);
+        boolean negate = !SignVerifyECDSA(curve.disposablePriv, curve.disposablePub, rm.verifyEcdsa, resultBuffer);
+        rm.unlock(resultBuffer);
+        rm.unlock(pointBuffer);
+        if (negate)
+            negate();
+    }
 
-            rm.lock(pointBuffer2);
-            getW(pointBuffer2, (short) 0);
-            setW(pointBuffer, (short) 0, curve.POINT_SIZE);
+    /**
+     * Multiply value of this point by provided scalar using X-only key agreement. Stores the result into this point.
+     * The y coordinate of Q = scalar * P is recovered from x(Q) and x(Q + P), see recoverY.
+     *
+     * @param scalar value of scalar for multiplication
+     */
+    private void multXRecoverY(BigNat scalar) {
+        byte[] resultBuffer = rm.ARRAY_A;
+        BigNat xQ = rm.EC_BN_B;
+        BigNat xR = rm.EC_BN_C;
 
-            // y_1 - y_2
-            lambda.lock();
-            lambda.fromByteArray(pointBuffer2, (short) (1 + curve.COORD_SIZE), curve.COORD_SIZE);
-            tmp.lock();
-            tmp.fromByteArray(pointBuffer, (short) (1 + curve.COORD_SIZE), curve.COORD_SIZE);
-            lambda.modSub(tmp, curve.pBN);
-
-            // (x_1 - x_2)^-1
-            denominator.lock();
-            denominator.fromByteArray(pointBuffer2, (short) 1, curve.COORD_SIZE);
-            tmp.fromByteArray(pointBuffer, (short) 1, curve.COORD_SIZE);
-            denominator.modSub(tmp, curve.pBN);
-            denominator.modInv(curve.pBN);
-
-            // λ = (y_1 - y_2)/(x_1 - x_2)
-            lambda.modMult(denominator, curve.pBN);
-            denominator.unlock();
-
-            // x_3 = λ^2 - x_1 - x_2
-            lambda.modSq(curve.pBN);
-            tmp.fromByteArray(pointBuffer2, (short) 1, curve.COORD_SIZE);
-            lambda.modSub(tmp, curve.pBN);
-            tmp.fromByteArray(pointBuffer, (short) 1, curve.COORD_SIZE);
-            lambda.modSub(tmp, curve.pBN);
-            tmp.unlock();
+        // x(Q) and x(Q + P) with Q = scalar * P
+        xQ.lock();
+        xR.lock();
+        rm.lock(resultBuffer);
+        short len = multXKA(scalar, resultBuffer, (short) 0);
+        xQ.fromByteArray(resultBuffer, (short) 0, len);
+        scalar.increment();
+        len = multXKA(scalar, resultBuffer, (short) 0);
+        xR.fromByteArray(resultBuffer, (short) 0, len);
+        rm.unlock(resultBuffer);
+        scalar.decrement(); // keep the original
+
+        recoverY(xQ, xR);
+        xR.unlock();
+        xQ.unlock();
+    }
 
-            // If <x, y> + P != (scalar + 1)P, negate the point
-            negate = !lambda.equals(x);
-            lambda.unlock();
-            x.unlock();
-        }
+    /**
+     * Sets this point P = (x, y) to Q given x(Q) and x(Q + P). The y coordinate of Q is recovered by the Okeya-Sakurai
+     * formula y(Q) = (2b + (a + x * x(Q)) * (x + x(Q)) - x(Q + P) * (x - x(Q))^2) / 2y, which needs neither a square
+     * root nor a sign check.
+     *
+     * @param xQ x coordinate of Q, must be rm.EC_BN_B
+     * @param xR x coordinate of Q + P, must be rm.EC_BN_C, it is overwritten
+     */
+    private void recoverY(BigNat xQ, BigNat xR) {
+        byte[] pointBuffer = rm.POINT_ARRAY_A;
+        BigNat numerator = rm.EC_BN_D;
+        BigNat tmp = rm.EC_BN_E;
+
+        rm.lock(pointBuffer);
+        getW(pointBuffer, (short) 0);
+
+        // 2b - x(Q + P) * (x - x(Q))^2
+        tmp.lock();
+        tmp.fromByteArray(pointBuffer, (short) 1, curve.COORD_SIZE);
+        tmp.modSub(xQ, curve.pBN);
+        tmp.modSq(curve.pBN);
+        tmp.modMult(xR, curve.pBN);
+        numerator.lock();
+        numerator.clone(curve.bBN);
+        numerator.modAdd(curve.bBN, curve.pBN);
+        numerator.modSub(tmp, curve.pBN);
+
+        // (a + x * x(Q)) * (x + x(Q)) + 2b - ..., x(Q + P) is no longer needed
+        xR.fromByteArray(pointBuffer, (short) 1, curve.COORD_SIZE);
+        xR.modAdd(xQ, curve.pBN);
+        tmp.fromByteArray(pointBuffer, (short) 1, curve.COORD_SIZE);
+        tmp.modMultAdd(xQ, curve.aBN, curve.pBN);
+        tmp.modMultAdd(xR, numerator, curve.pBN);
+
+        // (2y)^-1
+        numerator.fromByteArray(pointBuffer, (short) (1 + curve.COORD_SIZE), curve.COORD_SIZE);
+        numerator.modAdd(numerator, curve.pBN);
+        numerator.modInv(curve.pBN);
+        numerator.modMult(tmp, curve.pBN);
+        tmp.unlock();
+
+        // Construct public key with <x(Q), y(Q)>
+        pointBuffer[0] = 0x04;
+        xQ.prependZeros(curve.COORD_SIZE, pointBuffer, (short) 1);
+        numerator.prependZeros(curve.COORD_SIZE, pointBuffer, (short) (1 + curve.COORD_SIZE));
+        numerator.unlock();
+        setW(pointBuffer, (short) 0, curve.POINT_SIZE);
         rm.unlock(pointBuffer);
-        if (negate)
-            negate();
     }
 
     /**
@@ -605,10 +1456,7 @@ public class ECPoint {
         byte[] pointBuffer = rm.POINT_ARRAY_B;
         // NOTE: potential problem on real cards (j2e) - when small scalar is used (e.g., BigNat.TWO), operation sometimes freezes
         rm.lock(pointBuffer);
-        scalar.prependZeros((short) curve.r.length, pointBuffer, (short) 0);
-        curve.disposablePriv.setS(pointBuffer, (short) 0, (short) curve.r.length);
-
-        rm.ecMultKA.init(curve.disposablePriv);
+        initMultKA(scalar, pointBuffer);
 
         short len = getW(pointBuffer, (short) 0);
         rm.ecMultKA.generateSecret(pointBuffer, (short) 0, len, outBuffer, outBufferOffset);
@@ -622,6 +1470,26 @@ public class ECPoint {
      * The operation will dump point into uncompressed_point_arr, negate Y and restore back
      */
     public void negate() {
+        negateLazy();
+        persistValue();
+    }
+
+    /**
+     * Same as negate, but a result held in transient Jacobian coordinates is not stored into the public key, see
+     * normalize().
+     */
+    public void negateLazy() {
+        if (state[0] != STATE_KEY) {
+            FieldElement tmp = curve.feA;
+            toJacobian();
+            tmp.lock();
+            tmp.zero();
+            tmp.subtract(jy);
+            tmp.reduce();
+            jy.copy(tmp);
+            tmp.unlock();
+            return;
+        }
         byte[] pointBuffer = rm.POINT_ARRAY_A;
         BigNat y = rm.EC_BN_C;
 
@@ -668,17 +1536,15 @@ public class ECPoint {
         //Y^2 = X^3 + XA + B = x(x^2+A)+B
         ySq.lock();
         ySq.clone(x);
-        ySq.modSq(curve.pBN);
-        ySq.modAdd(curve.aBN, curve.pBN);
-        ySq.modMult(x, curve.pBN);
-        ySq.modAdd(curve.bBN, curve.pBN);
+        ySq.modMultAdd(ySq, curve.aBN, curve.pBN);
+        ySq.modMultAdd(x, curve.bBN, curve.pBN);
         y.lock();
         y.clone(ySq);
-        if (!y.isQuadraticResidue(curve.pBN)) {
+        ySq.unlock();
+        if (!y.modSqrt(curve.pBN, swMontgomery())) {
+            y.unlock();
             return false;
         }
-        ySq.unlock();
-        y.modSqrt(curve.pBN);
 
         // Construct public key with <x, y_1>
         rm.lock(pointBuffer);
@@ -697,10 +1563,15 @@ public class ECPoint {
      * @return true if Y coordinate is even; false otherwise
      */
     public boolean isYEven() {
+        if (state[0] != STATE_KEY) {
+            normalizeCoordinates();
+            jy.reduce();
+            return !jy.value.isOdd();
+        }
         byte[] pointBuffer = rm.POINT_ARRAY_A;
 
         rm.lock(pointBuffer);
-        point.getW(pointBuffer, (short) 0);
+        getW(pointBuffer, (short) 0);
         boolean result = pointBuffer[(short) (curve.POINT_SIZE - 1)] % 2 == 0;
         rm.unlock(pointBuffer);
         return result;
@@ -770,11 +1641,13 @@ public class ECPoint {
             //Y^2 = X^3 + XA + B = x(x^2+A)+B
             y.lock();
             y.clone(x);
-            y.modSq(curve.pBN);
-            y.modAdd(curve.aBN, curve.pBN);
-            y.modMult(x, curve.pBN);
-            y.modAdd(curve.bBN, curve.pBN);
-            y.modSqrt(curve.pBN);
+            y.modMultAdd(y, curve.aBN, curve.pBN);
+            y.modMultAdd(x, curve.bBN, curve.pBN);
+            if (!y.modSqrt(curve.pBN, swMontgomery())) {
+                y.unlock();
+                x.unlock();
+                ISOException.throwIt(ReturnCodes.SW_ECPOINT_INVALID); // x is not on the curve
+            }
 
             rm.lock(pointBuffer);
             pointBuffer[0] = 0x04;
@@ -828,12 +1701,13 @@ public class ECPoint {
             //Y^2 = X^3 + XA + B = x(x^2+A)+B
             y.lock();
             y.clone(x);
-            y.modSq(curve.pBN);
-            y.modAdd(curve.aBN, curve.pBN);
-            y.modMult(x, curve.pBN);
+            y.modMultAdd(y, curve.aBN, curve.pBN);
+            y.modMultAdd(x, curve.bBN, curve.pBN);
             x.unlock();
-            y.modAdd(curve.bBN, curve.pBN);
-            y.modSqrt(curve.pBN);
+            if (!y.modSqrt(curve.pBN, swMontgomery())) {
+                y.unlock();
+                ISOException.throwIt(ReturnCodes.SW_ECPOINT_INVALID); // x is not on the curve
+            }
             p.lock();
             boolean odd = y.isOdd();
             if ((!odd && output[offset] != (byte) 0x02) || (odd && output[offset] != (byte) 0x03)) {
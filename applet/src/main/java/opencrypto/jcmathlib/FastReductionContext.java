@@ -0,0 +1,111 @@
+package opencrypto.jcmathlib;
+
+import javacard.framework.ISOException;
+import javacard.framework.Util;
+
+/**
+ * Description of a modulus of a special form allowing reduction by folding and adding instead of a division.
+ *
+ * Supported forms are moduli with a short c = 2^(8 * k) mod n for n of k bytes (e.g., secp256k1 with
+ * c = 2^32 + 977 or 2^255 - 19 with c = 38) and the NIST P-256 prime reduced by its Solinas formulas. Once created
+ * with a form other than FORM_GENERIC, the context is associated with the modulus and reductions by the modulus
+ * (e.g., in BigNat.mod and the software path of BigNat.modMult) use it.
+ */
+public class FastReductionContext {
+    public static final byte FORM_GENERIC = 0;
+    public static final byte FORM_PSEUDO_MERSENNE = 1;
+    public static final byte FORM_P256 = 2;
+
+    // NIST P-256 prime 2^256 - 2^224 + 2^192 + 2^96 - 1, kept here so the library does not depend on the curve classes
+    private static final byte[] P256_P = {
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff
+    };
+
+    // Coefficients of the upper words A8..A15 for the words 0..7 of the P-256 reduction (FIPS 186-4, D.2.3)
+    static final byte[] P256_COEFFICIENTS = {
+            1, 1, 0, -1, -1, -1, -1, 0,
+            0, 1, 1, 0, -1, -1, -1, -1,
+            0, 0, 1, 1, 0, -1, -1, -1,
+            -1, -1, 0, 2, 2, 1, 0, -1,
+            0, -1, -1, 0, 2, 2, 1, 0,
+            0, 0, -1, -1, 0, 2, 2, 1,
+            -1, -1, 0, 0, 0, 1, 3, 2,
+            1, 0, -1, -1, -1, -1, 0, 3
+    };
+
+    public final BigNat mod;
+    public final BigNat c; // 2^(8 * k) mod n for n of k bytes
+    public byte form;
+    private final ResourceManager rm;
+
+    /**
+     * Creates a new context for the given modulus and detects its form. The context is associated with the modulus
+     * if a special form is detected. The modulus is not copied and must not be changed without calling update
+     * afterwards.
+     *
+     * @param mod modulus without leading zeroes
+     * @param allocatorType type of allocator for the precomputed values
+     * @param rm resource manager
+     */
+    public FastReductionContext(BigNat mod, byte allocatorType, ResourceManager rm) {
+        this.mod = mod;
+        this.rm = rm;
+        c = new BigNat(mod.length(), allocatorType, rm);
+        update();
+    }
+
+    /**
+     * Creates a new context for the given modulus of a known form and associates it with the modulus.
+     *
+     * @param mod modulus without leading zeroes
+     * @param form expected form of the modulus
+     * @param allocatorType type of allocator for the precomputed values
+     * @param rm resource manager
+     */
+    public FastReductionContext(BigNat mod, byte form, byte allocatorType, ResourceManager rm) {
+        this(mod, allocatorType, rm);
+        if (this.form != form) {
+            ISOException.throwIt(ReturnCodes.SW_OPERATION_NOT_SUPPORTED);
+        }
+    }
+
+    /**
+     * Recomputes c and the form of the modulus, e.g., after the value of the modulus changed.
+     */
+    public void update() {
+        BigNat tmp = rm.BN_E;
+        byte[] tmpBuffer = rm.ARRAY_A;
+        short len = (short) (mod.length() + 1);
+
+        rm.lock(tmpBuffer);
+        Util.arrayFillNonAtomic(tmpBuffer, (short) 0, len, (byte) 0);
+        tmpBuffer[0] = (byte) 0x01;
+        tmp.lock();
+        tmp.fromByteArray(tmpBuffer, (short) 0, len);
+        tmp.remainderDivide(mod, null);
+        tmp.shrink();
+        c.setSize(tmp.length());
+        c.copy(tmp);
+        tmp.unlock();
+
+        short modLength = mod.copyToByteArray(tmpBuffer, (short) 0);
+        if (modLength == (short) P256_P.length
+                && Util.arrayCompare(tmpBuffer, (short) 0, P256_P, (short) 0, modLength) == 0) {
+            form = FORM_P256;
+        } else if ((short) (2 * c.length()) < mod.length()) {
+            form = FORM_PSEUDO_MERSENNE;
+        } else {
+            form = FORM_GENERIC;
+        }
+        rm.unlock(tmpBuffer);
+
+        mod.fastReduction = form != FORM_GENERIC ? this : null;
+    }
+}
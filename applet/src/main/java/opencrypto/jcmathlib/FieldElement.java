@@ -0,0 +1,235 @@
+package opencrypto.jcmathlib;
+
+/**
+ * Element of the prime field of an ECCurve with lazy reduction.
+ *
+ * The value is kept one byte longer than the modulus p and only an upper bound value < bound * p is tracked, so
+ * chains of additions and subtractions are computed without comparing and subtracting p after each step. The value is
+ * reduced once the bound would overflow or when an operation (multiplication, inversion, serialization) needs the
+ * reduced value.
+ */
+public class FieldElement {
+    public static final short MAX_BOUND = 127;
+    private static final short SUBTRACTION_BOUND = 4; // reduce by subtracting p up to this bound, by BigNat.mod above
+
+    public final BigNat value;
+    public final ECCurve curve;
+    private short bound;
+
+    /**
+     * Creates a new field element of the curve.
+     *
+     * @param curve curve defining the field
+     * @param allocatorType type of allocator for the value
+     */
+    public FieldElement(ECCurve curve, byte allocatorType) {
+        this(new BigNat((short) (curve.COORD_SIZE + 1), allocatorType, curve.rm), curve);
+    }
+
+    /**
+     * Creates a new field element of the curve stored in the given BigNat, e.g., a temporary of ResourceManager.
+     * The BigNat must be able to hold values one byte longer than p.
+     *
+     * @param value BigNat holding the value
+     * @param curve curve defining the field
+     */
+    public FieldElement(BigNat value, ECCurve curve) {
+        this.value = value;
+        this.curve = curve;
+        bound = 1;
+    }
+
+    /**
+     * Sets the value from a byte array. The value must be lesser than p.
+     */
+    public void fromByteArray(byte[] source, short sourceOffset, short length) {
+        value.fromByteArray(source, sourceOffset, length);
+        value.resize(workingLength());
+        bound = 1;
+    }
+
+    /**
+     * Sets the value to a BigNat lesser than p.
+     */
+    public void set(BigNat other) {
+        value.setSize(workingLength());
+        value.copy(other);
+        bound = 1;
+    }
+
+    /**
+     * Copies the value of other to this.
+     */
+    public void copy(FieldElement other) {
+        value.setSize(workingLength());
+        value.copy(other.value);
+        bound = other.bound;
+    }
+
+    /**
+     * Sets the value to zero.
+     */
+    public void zero() {
+        value.setSize(workingLength());
+        value.zero();
+        bound = 1;
+    }
+
+    /**
+     * Adds other to this without reduction.
+     */
+    public void add(FieldElement other) {
+        prepareBound(other);
+        value.add(other.value);
+        bound += other.bound;
+    }
+
+    /**
+     * Adds a BigNat lesser than p to this without reduction.
+     */
+    public void add(BigNat other) {
+        if (bound == MAX_BOUND) {
+            reduce();
+        }
+        value.add(other);
+        bound++;
+    }
+
+    /**
+     * Subtracts other from this without reduction by adding a multiple of p bounding the value of other first.
+     */
+    public void subtract(FieldElement other) {
+        prepareBound(other);
+        value.add(curve.pBN, other.bound);
+        value.subtract(other.value);
+        bound += other.bound;
+    }
+
+    /**
+     * Computes this * other mod p. Both operands are reduced first.
+     */
+    public void mult(FieldElement other) {
+        reduce();
+        other.reduce();
+        value.setSize(curve.pBN.length());
+        if (other == this) {
+            value.modSq(curve.pBN);
+        } else {
+            value.modMult(other.value, curve.pBN);
+        }
+        value.resize(workingLength());
+    }
+
+    /**
+     * Computes this * other + addend mod p with a single reduction. All operands are reduced first.
+     */
+    public void multAdd(FieldElement other, FieldElement addend) {
+        reduce();
+        other.reduce();
+        addend.reduce();
+        value.setSize(curve.pBN.length());
+        value.modMultAdd(other.value, addend.value, curve.pBN);
+        value.resize(workingLength());
+    }
+
+    /**
+     * Computes this * other - subtrahend mod p with a single reduction. All operands are reduced first.
+     */
+    public void multSubtract(FieldElement other, FieldElement subtrahend) {
+        reduce();
+        other.reduce();
+        subtrahend.reduce();
+        value.setSize(curve.pBN.length());
+        value.modMultSub(other.value, subtrahend.value, curve.pBN);
+        value.resize(workingLength());
+    }
+
+    /**
+     * Computes the inverse of this mod p.
+     */
+    public void inv() {
+        reduce();
+        value.setSize(curve.pBN.length());
+        value.modInv(curve.pBN);
+        value.resize(workingLength());
+    }
+
+    /**
+     * Reduces the value below p. A reduced value is not written, so reading a field element stored in EEPROM does not
+     * modify it.
+     */
+    public void reduce() {
+        if (bound == 1) {
+            return;
+        }
+        if (bound > SUBTRACTION_BOUND) {
+            value.mod(curve.pBN);
+        } else {
+            while (!value.isLesser(curve.pBN)) {
+                value.subtract(curve.pBN);
+            }
+        }
+        bound = 1;
+    }
+
+    /**
+     * Returns true if the value is zero mod p.
+     */
+    public boolean isZero() {
+        reduce();
+        return value.isZero();
+    }
+
+    /**
+     * Returns true if the value is one mod p.
+     */
+    public boolean isOne() {
+        reduce();
+        return value.isOne();
+    }
+
+    /**
+     * Serializes the reduced value as a coordinate of the curve prepended by zeroes.
+     *
+     * @param outBuffer output array
+     * @param outOffset offset within the output array
+     */
+    public void prependZeros(byte[] outBuffer, short outOffset) {
+        reduce();
+        value.setSize(curve.pBN.length());
+        value.prependZeros(curve.COORD_SIZE, outBuffer, outOffset);
+        value.resize(workingLength());
+    }
+
+    /**
+     * Reduces this or other if the bound of their sum would overflow MAX_BOUND.
+     */
+    private void prepareBound(FieldElement other) {
+        if ((short) (bound + other.bound) > MAX_BOUND) {
+            reduce();
+        }
+        if ((short) (bound + other.bound) > MAX_BOUND) {
+            other.reduce();
+        }
+    }
+
+    private short workingLength() {
+        return (short) (curve.pBN.length() + 1);
+    }
+
+    /// [DependencyBegin:ObjectLocker]
+    /**
+     * Lock/reserve the BigNat holding this element.
+     */
+    public void lock() {
+        value.lock();
+    }
+
+    /**
+     * Unlock/release the BigNat holding this element.
+     */
+    public void unlock() {
+        value.unlock();
+    }
+    /// [DependencyEnd:ObjectLocker]
+}
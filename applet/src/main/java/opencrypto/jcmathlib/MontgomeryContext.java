@@ -0,0 +1,63 @@
+package opencrypto.jcmathlib;
+
+import javacard.framework.ISOException;
+import javacard.framework.Util;
+
+/**
+ * Precomputed values for Montgomery multiplication modulo a fixed odd modulus.
+ *
+ * Values in Montgomery form are represented as x * R mod n with R = 2^(8 * n.length()). Chains of multiplications
+ * can be computed in Montgomery form without a division by the modulus in each step.
+ */
+public class MontgomeryContext {
+    public final BigNat mod;
+    public final BigNat r2; // R^2 mod n
+    public final BigNat one; // R mod n, i.e., one in Montgomery form
+    public short nPrime; // -n^(-1) mod 2^8
+    private final ResourceManager rm;
+
+    /**
+     * Creates a new context for the given modulus. The modulus is not copied and must not be changed without calling
+     * update afterwards.
+     *
+     * @param mod odd modulus
+     * @param allocatorType type of allocator for the precomputed values
+     * @param rm resource manager
+     */
+    public MontgomeryContext(BigNat mod, byte allocatorType, ResourceManager rm) {
+        if ((short) (2 * mod.length() + 1) > rm.MAX_SQ_LENGTH) {
+            ISOException.throwIt(ReturnCodes.SW_BIGNAT_MODULOTOOLARGE);
+        }
+        this.mod = mod;
+        this.rm = rm;
+        r2 = new BigNat(mod.length(), allocatorType, rm);
+        one = new BigNat(mod.length(), allocatorType, rm);
+        update();
+    }
+
+    /**
+     * Recomputes the precomputed values, e.g., after a card reset cleared the modulus stored in RAM.
+     */
+    public void update() {
+        BigNat tmp = rm.BN_E;
+        byte[] tmpBuffer = rm.ARRAY_A;
+        short len = (short) (2 * mod.length() + 1);
+
+        nPrime = mod.montConstant();
+
+        rm.lock(tmpBuffer);
+        Util.arrayFillNonAtomic(tmpBuffer, (short) 0, len, (byte) 0);
+        tmpBuffer[0] = (byte) 0x01;
+        tmp.lock();
+        tmp.fromByteArray(tmpBuffer, (short) 0, len);
+        rm.unlock(tmpBuffer);
+        tmp.mod(mod);
+        r2.setSize(mod.length());
+        r2.copy(tmp);
+        tmp.unlock();
+
+        one.setSize(mod.length());
+        one.copy(r2);
+        one.fromMont(this);
+    }
+}
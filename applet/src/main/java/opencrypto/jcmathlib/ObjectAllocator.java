@@ -37,8 +37,13 @@ public class ObjectAllocator {
     public static final byte POINT_ARRAY_A = 16;
     public static final byte POINT_ARRAY_B = 17;
     public static final byte HASH_ARRAY = 18;
+    public static final byte BN_H = 19;
+    public static final byte BN_EXP_TABLE = 20;
+    public static final byte POINT_JACOBIAN = 21;
+    public static final byte EC_MULT_TABLE = 22;
+    public static final byte WNAF_ARRAY = 23;
     
-    public static final short ALLOCATOR_TYPE_ARRAY_LENGTH = (short) (HASH_ARRAY + 1);
+    public static final short ALLOCATOR_TYPE_ARRAY_LENGTH = (short) (WNAF_ARRAY + 1);
     
     /**
      * Creates new allocator control object, resets performance counters
@@ -17,9 +17,12 @@ public class OperationSupport {
     public static final short SECORA = 0x0006;      // Infineon Secora ID S
 
     public short MIN_RSA_BIT_LENGTH = 512;
+    public short KARATSUBA_MIN_LENGTH = 48; // minimal operand length in bytes for Karatsuba software multiplication, 0 disables it
+    public byte RSA_EXP_CACHE_SLOTS = 4; // number of RSA keys and Ciphers caching modExp setups, at least 1
     public boolean DEFERRED_INITIALIZATION = false;
 
     public boolean RSA_EXP = true;
+    public boolean RSA_INV = true; // modular inversion via RSA exponentiation, software binary extended GCD otherwise
     public boolean RSA_SQ = true;
     public boolean RSA_PUB = false;
     public boolean RSA_CHECK_ONE = false;
@@ -34,10 +37,12 @@ public class OperationSupport {
     public boolean EC_HW_X = true;
     public boolean EC_HW_ADD = false;
     public boolean EC_SW_DOUBLE = false;
+    public boolean EC_SW_MULT = false; // software w-NAF scalar multiplication instead of KeyAgreement
+    public boolean EC_POINT_CACHE = false; // keep the affine coordinates of a point converted by getW for software arithmetic
     public boolean EC_PRECISE_BITLENGTH = true;
     public boolean EC_SET_COFACTOR = false;
     public boolean EC_GEN = true;
-    public boolean EC_HW_X_ECDSA = true;
+    public boolean EC_HW_X_ECDSA = true; // y of X-only multiplication fixed by ECDSA, recovered from x((k + 1)P) otherwise
 
     private OperationSupport() {
     }
@@ -91,6 +96,7 @@ public class OperationSupport {
             case SECORA:
                 MIN_RSA_BIT_LENGTH = 1024;
                 RSA_SQ = false;
+                RSA_INV = false;
                 RSA_CHECK_EXP_ONE = true;
                 RSA_PUB = true;
                 RSA_EXTRA_MOD = true;
@@ -17,21 +17,41 @@ public class ResourceManager {
     KeyAgreement ecMultKA;
     KeyAgreement ecAddKA;
     Signature verifyEcdsa;
-    Cipher sqCiph, modSqCiph, expCiph;
-    RSAPublicKey sqPub, modSqPub, expPub;
-    RSAPrivateKey sqPriv, modSqPriv, expPriv;
+    Cipher sqCiph, modSqCiph;
+    RSAPublicKey sqPub, modSqPub;
+    RSAPrivateKey sqPriv, modSqPriv;
     BigNat fixedMod;
 
+    // Cache of RSA engines initialized for modExp, see getExpCipher
+    Cipher[] expCiphs;
+    RSAPublicKey[] expPubs;
+    RSAPrivateKey[] expPrivs;
+    Object[] expCacheMods; // modulus of each slot, null for an invalid slot
+    byte[] expCacheDigests; // digest of exponent and modulus of each slot, EXP_CACHE_DIGEST_LENGTH bytes each
+    byte[] expCacheOrder; // slots from the most to the least recently used
+
+    // Quadratic non-residue of the last modulus used in modSqrt, see getNonResidue
+    BigNat nonResidueMod;
+    byte[] nonResidueModValue;
+    short nonResidueModLength;
+    short nonResidue;
+
     byte[] ARRAY_A, ARRAY_B, POINT_ARRAY_A, POINT_ARRAY_B, HASH_ARRAY;
+    byte[] WNAF_ARRAY; // digits of the scalar recoded for software EC multiplication
 
     static byte[] CONST_ONE = {0x01};
     static byte[] CONST_TWO = {0x02};
 
     BigNat BN_WORD;
-    BigNat BN_A, BN_B, BN_C, BN_D, BN_E, BN_F, BN_G;
+    BigNat BN_A, BN_B, BN_C, BN_D, BN_E, BN_F, BN_G, BN_H;
+    BigNat[] BN_EXP_TABLE; // odd powers for software modExp with windows of up to EXP_WINDOW_BITS bits
     BigNat EC_BN_A, EC_BN_B, EC_BN_C, EC_BN_D, EC_BN_E, EC_BN_F;
     public static BigNat TWO, THREE, ONE_COORD;
 
+    public static final short EXP_WINDOW_BITS = 4;
+    public static final short EXP_CACHE_DIGEST_LENGTH = 16; // prefix of the SHA-256 digest keying a modExp cache slot
+    public static final short WNAF_WIDTH = 4; // width of the w-NAF recoding of scalars for software EC multiplication
+
     public final short MAX_EXP_BIT_LENGTH;
     public final short MAX_EXP_LENGTH;
     public final short MAX_SQ_BIT_LENGTH;
@@ -39,6 +59,7 @@ public class ResourceManager {
     public final short MAX_BIGNAT_SIZE;
     public final short MAX_POINT_SIZE;
     public final short MAX_COORD_SIZE;
+    public final byte EXP_CACHE_SLOTS;
 
     public ResourceManager(short maxEcLength) {
         this(maxEcLength, (short) 0);
@@ -74,6 +95,7 @@ public class ResourceManager {
         MAX_EXP_LENGTH = (short) (MAX_EXP_BIT_LENGTH / 8);
         MAX_BIGNAT_SIZE = (short) (MAX_EXP_BIT_LENGTH / 8);
         MAX_COORD_SIZE = (short) (MAX_POINT_SIZE / 2);
+        EXP_CACHE_SLOTS = OperationSupport.getInstance().RSA_EXP_CACHE_SLOTS;
 
         memAlloc = new ObjectAllocator();
         memAlloc.setAllAllocatorsRAM();
@@ -93,6 +115,10 @@ public class ResourceManager {
         hashEngine = MessageDigest.getInstance(MessageDigest.ALG_SHA_256, false);
         HASH_ARRAY = memAlloc.allocateByteArray(hashEngine.getLength(), memAlloc.getAllocatorType(ObjectAllocator.HASH_ARRAY));
         locker.registerLock(HASH_ARRAY);
+        // One digit per bit of a scalar for software EC multiplication, allocated on the first use if KeyAgreement is used
+        if (OperationSupport.getInstance().EC_SW_MULT) {
+            allocateWnafArray();
+        }
 
         BN_WORD = new BigNat((short) 2, memAlloc.getAllocatorType(ObjectAllocator.BN_WORD), this);
 
@@ -104,6 +130,12 @@ public class ResourceManager {
         BN_F = new BigNat(MAX_SQ_LENGTH, memAlloc.getAllocatorType(ObjectAllocator.BN_F), this);
         BN_G = new BigNat(MAX_SQ_LENGTH, memAlloc.getAllocatorType(ObjectAllocator.BN_G), this);
 
+        // Software exponentiation helpers, allocated on the first use if RSA engine is used for exponentiation
+        if (!OperationSupport.getInstance().RSA_EXP) {
+            allocateExpHelpers(memAlloc.getAllocatorType(ObjectAllocator.BN_H),
+                    memAlloc.getAllocatorType(ObjectAllocator.BN_EXP_TABLE));
+        }
+
         EC_BN_A = new BigNat(MAX_POINT_SIZE, memAlloc.getAllocatorType(ObjectAllocator.EC_BN_A), this);
         EC_BN_B = new BigNat(MAX_COORD_SIZE, memAlloc.getAllocatorType(ObjectAllocator.EC_BN_B), this);
         EC_BN_C = new BigNat(MAX_COORD_SIZE, memAlloc.getAllocatorType(ObjectAllocator.EC_BN_C), this);
@@ -154,13 +186,61 @@ public class ResourceManager {
         }
 
         // RSA Exp Helpers
-        expPub = (RSAPublicKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PUBLIC, MAX_EXP_BIT_LENGTH, false);
-        expPriv = (RSAPrivateKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PRIVATE, MAX_EXP_BIT_LENGTH, false);
-        expCiph = Cipher.getInstance(Cipher.ALG_RSA_NOPAD, false);
+        expCiphs = new Cipher[EXP_CACHE_SLOTS];
+        expPubs = new RSAPublicKey[EXP_CACHE_SLOTS];
+        expPrivs = new RSAPrivateKey[EXP_CACHE_SLOTS];
+        expCacheMods = JCSystem.makeTransientObjectArray(EXP_CACHE_SLOTS, JCSystem.CLEAR_ON_RESET);
+        expCacheDigests = memAlloc.allocateByteArray((short) (EXP_CACHE_SLOTS * EXP_CACHE_DIGEST_LENGTH), JCSystem.MEMORY_TYPE_TRANSIENT_RESET);
+        expCacheOrder = memAlloc.allocateByteArray(EXP_CACHE_SLOTS, JCSystem.MEMORY_TYPE_TRANSIENT_RESET);
+        for (byte i = 0; i < EXP_CACHE_SLOTS; i++) {
+            if (OperationSupport.getInstance().RSA_PUB) {
+                expPubs[i] = (RSAPublicKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PUBLIC, MAX_EXP_BIT_LENGTH, false);
+            } else {
+                expPrivs[i] = (RSAPrivateKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PRIVATE, MAX_EXP_BIT_LENGTH, false);
+            }
+            expCiphs[i] = Cipher.getInstance(Cipher.ALG_RSA_NOPAD, false);
+            expCacheOrder[i] = i;
+        }
+        nonResidueModValue = new byte[MAX_BIGNAT_SIZE];
 
         rng = RandomData.getInstance(RandomData.ALG_SECURE_RANDOM);
     }
 
+    private void allocateWnafArray() {
+        WNAF_ARRAY = memAlloc.allocateByteArray((short) (MAX_COORD_SIZE * 8 + 1), memAlloc.getAllocatorType(ObjectAllocator.WNAF_ARRAY));
+        locker.registerLock(WNAF_ARRAY);
+    }
+
+    /**
+     * Returns the array of digits of a recoded scalar used by software EC multiplication. If it was not allocated
+     * together with the resource manager, it is allocated on the first use.
+     *
+     * @return array of digits
+     */
+    byte[] getWnafArray() {
+        if (WNAF_ARRAY == null) {
+            allocateWnafArray();
+        }
+        return WNAF_ARRAY;
+    }
+
+    private void allocateExpHelpers(byte resultAllocatorType, byte tableAllocatorType) {
+        BN_H = new BigNat((short) (2 * MAX_BIGNAT_SIZE), resultAllocatorType, this);
+        BN_EXP_TABLE = new BigNat[(short) (1 << (EXP_WINDOW_BITS - 1))];
+        for (short i = 0; i < (short) BN_EXP_TABLE.length; i++) {
+            BN_EXP_TABLE[i] = new BigNat(MAX_BIGNAT_SIZE, tableAllocatorType, this);
+        }
+    }
+
+    /**
+     * Allocates BN_H and BN_EXP_TABLE used by software exponentiation in EEPROM, unless they were allocated already.
+     */
+    void allocateExpHelpers() {
+        if (BN_H == null) {
+            allocateExpHelpers(JCSystem.MEMORY_TYPE_PERSISTENT, JCSystem.MEMORY_TYPE_PERSISTENT);
+        }
+    }
+
     /**
      * Preloads modSq engine with a given mod. Can increase performance when the same mod is used repeatedly. The
      * provided mod is assumed to be fixed.
@@ -219,6 +299,153 @@ public class ResourceManager {
         tmpMod.unlock();
     }
 
+    /**
+     * Returns RSA engine initialized for exponentiation by exp modulo mod.
+     *
+     * Initialized engines are cached in EXP_CACHE_SLOTS slots keyed by the modulus object and a digest of the exponent
+     * and the modulus value, so repeated exponentiations with the same modulus and exponent (e.g., modInv modulo curve
+     * p or r) skip the key setup and Cipher.init, while the exponent itself is not stored outside the RSA key. The
+     * digest keeps the cache valid if the modulus object is modified. The cache is kept in RAM and cleared on reset
+     * and by erase(). On a miss, the least recently used slot is replaced.
+     *
+     * @param exp exponent
+     * @param mod modulus of at most MAX_EXP_LENGTH bytes
+     * @param tmpBuffer buffer of at least MAX_EXP_LENGTH bytes, its content is overwritten
+     * @return initialized RSA engine
+     */
+    Cipher getExpCipher(BigNat exp, BigNat mod, byte[] tmpBuffer) {
+        if (expCacheOrder[0] == expCacheOrder[(short) (EXP_CACHE_SLOTS - 1)] && EXP_CACHE_SLOTS > 1) {
+            // The order was cleared by a card reset
+            clearExpCache();
+        }
+
+        // Digest of the exponent length, the exponent and the modulus
+        Util.setShort(tmpBuffer, (short) 0, exp.length());
+        hashEngine.update(tmpBuffer, (short) 0, (short) 2);
+        short length = exp.copyToByteArray(tmpBuffer, (short) 0);
+        hashEngine.update(tmpBuffer, (short) 0, length);
+        Util.arrayFillNonAtomic(tmpBuffer, (short) 0, length, (byte) 0);
+        length = mod.copyToByteArray(tmpBuffer, (short) 0);
+        hashEngine.doFinal(tmpBuffer, (short) 0, length, tmpBuffer, (short) 0);
+
+        byte slot = -1;
+        short i;
+        for (i = 0; i < EXP_CACHE_SLOTS; i++) {
+            byte candidate = expCacheOrder[i];
+            if (expCacheMods[candidate] == mod && Util.arrayCompare(tmpBuffer, (short) 0, expCacheDigests,
+                    (short) (candidate * EXP_CACHE_DIGEST_LENGTH), EXP_CACHE_DIGEST_LENGTH) == 0) {
+                slot = candidate;
+                break;
+            }
+        }
+
+        if (slot < 0) {
+            i = (short) (EXP_CACHE_SLOTS - 1);
+            slot = expCacheOrder[i];
+            expCacheMods[slot] = null;
+            Util.arrayCopyNonAtomic(tmpBuffer, (short) 0, expCacheDigests, (short) (slot * EXP_CACHE_DIGEST_LENGTH),
+                    EXP_CACHE_DIGEST_LENGTH);
+            initExpCipher(slot, exp, mod, tmpBuffer);
+            expCacheMods[slot] = mod;
+        }
+
+        if (i != 0) {
+            // Move the slot to the front of the order
+            for (; i > 0; i--) {
+                expCacheOrder[i] = expCacheOrder[(short) (i - 1)];
+            }
+            expCacheOrder[0] = slot;
+        }
+        return expCiphs[slot];
+    }
+
+    /**
+     * Initializes RSA engine of a cache slot for exponentiation by exp modulo mod.
+     */
+    private void initExpCipher(byte slot, BigNat exp, BigNat mod, byte[] tmpBuffer) {
+        short expLength = exp.copyToByteArray(tmpBuffer, (short) 0);
+        if (OperationSupport.getInstance().RSA_PUB) {
+            if (OperationSupport.getInstance().RSA_KEY_REFRESH) {
+                // Simulator fails when reusing the original object
+                expPubs[slot] = (RSAPublicKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PUBLIC, MAX_EXP_BIT_LENGTH, false);
+            }
+            expPubs[slot].setExponent(tmpBuffer, (short) 0, expLength);
+        } else {
+            if (OperationSupport.getInstance().RSA_KEY_REFRESH) {
+                // Simulator fails when reusing the original object
+                expPrivs[slot] = (RSAPrivateKey) KeyBuilder.buildKey(KeyBuilder.TYPE_RSA_PRIVATE, MAX_EXP_BIT_LENGTH, false);
+            }
+            expPrivs[slot].setExponent(tmpBuffer, (short) 0, expLength);
+        }
+
+        short modLength = MAX_EXP_LENGTH;
+        if (OperationSupport.getInstance().RSA_RESIZE_MOD) {
+            if (OperationSupport.getInstance().RSA_APPEND_MOD) {
+                mod.appendZeros(MAX_EXP_LENGTH, tmpBuffer, (short) 0);
+            } else {
+                mod.prependZeros(MAX_EXP_LENGTH, tmpBuffer, (short) 0);
+            }
+        } else {
+            modLength = mod.copyToByteArray(tmpBuffer, (short) 0);
+        }
+
+        if (OperationSupport.getInstance().RSA_PUB) {
+            expPubs[slot].setModulus(tmpBuffer, (short) 0, modLength);
+            expCiphs[slot].init(expPubs[slot], Cipher.MODE_DECRYPT);
+        } else {
+            expPrivs[slot].setModulus(tmpBuffer, (short) 0, modLength);
+            expCiphs[slot].init(expPrivs[slot], Cipher.MODE_DECRYPT);
+        }
+    }
+
+    /**
+     * Invalidates all slots of the modExp engine cache and clears the exponents held by their RSA keys.
+     */
+    private void clearExpCache() {
+        for (byte i = 0; i < EXP_CACHE_SLOTS; i++) {
+            expCacheMods[i] = null;
+            expCacheOrder[i] = i;
+            if (OperationSupport.getInstance().RSA_PUB) {
+                expPubs[i].clearKey();
+            } else {
+                expPrivs[i].clearKey();
+            }
+        }
+        Util.arrayFillNonAtomic(expCacheDigests, (short) 0, (short) expCacheDigests.length, (byte) 0);
+    }
+
+    /**
+     * Returns the cached quadratic non-residue modulo mod. The cache is keyed by the modulus object and verified
+     * against its value.
+     *
+     * @param mod modulus
+     * @return the quadratic non-residue or 0 if it is not cached
+     */
+    short getNonResidue(BigNat mod) {
+        if (nonResidueMod != mod) {
+            return 0;
+        }
+        lock(ARRAY_A);
+        short modLength = mod.copyToByteArray(ARRAY_A, (short) 0);
+        boolean hit = nonResidueModLength == modLength
+                && Util.arrayCompare(ARRAY_A, (short) 0, nonResidueModValue, (short) 0, modLength) == 0;
+        unlock(ARRAY_A);
+        return hit ? nonResidue : 0;
+    }
+
+    /**
+     * Caches a quadratic non-residue modulo mod.
+     *
+     * @param mod modulus of at most MAX_BIGNAT_SIZE bytes
+     * @param value quadratic non-residue modulo mod
+     */
+    void setNonResidue(BigNat mod, short value) {
+        nonResidueMod = null;
+        nonResidueModLength = mod.copyToByteArray(nonResidueModValue, (short) 0);
+        nonResidue = value;
+        nonResidueMod = mod;
+    }
+
     /**
      * Erase all values stored in helper objects
      */
@@ -232,6 +459,12 @@ public class ResourceManager {
         BN_E.erase();
         BN_F.erase();
         BN_G.erase();
+        if (BN_H != null) {
+            BN_H.erase();
+            for (short i = 0; i < (short) BN_EXP_TABLE.length; i++) {
+                BN_EXP_TABLE[i].erase();
+            }
+        }
 
         EC_BN_A.erase();
         EC_BN_B.erase();
@@ -243,10 +476,11 @@ public class ResourceManager {
         Util.arrayFillNonAtomic(ARRAY_A, (short) 0, (short) ARRAY_A.length, (byte) 0);
         Util.arrayFillNonAtomic(ARRAY_B, (short) 0, (short) ARRAY_B.length, (byte) 0);
         Util.arrayFillNonAtomic(POINT_ARRAY_A, (short) 0, (short) POINT_ARRAY_A.length, (byte) 0);
+        clearExpCache();
     }
 
     /// [DependencyBegin:ObjectLocker]
-    public static final byte LOCKER_ARRAYS = 5;
+    public static final byte LOCKER_ARRAYS = 6;
     public static final byte LOCKER_OBJECTS = 1;
     public ObjectLocker locker = new ObjectLocker((short) (LOCKER_ARRAYS + LOCKER_OBJECTS));
 
@@ -301,6 +535,16 @@ public class ResourceManager {
         if (BN_G.isLocked()) {
             BN_G.unlock();
         }
+        if (BN_H != null) {
+            if (BN_H.isLocked()) {
+                BN_H.unlock();
+            }
+            for (short i = 0; i < (short) BN_EXP_TABLE.length; i++) {
+                if (BN_EXP_TABLE[i].isLocked()) {
+                    BN_EXP_TABLE[i].unlock();
+                }
+            }
+        }
 
         if (EC_BN_A.isLocked()) {
             EC_BN_A.unlock();
@@ -12,12 +12,15 @@ import javacard.framework.SystemException;
 import javacard.framework.TransactionException;
 import javacard.framework.Util;
 import javacard.security.CryptoException;
+import javacard.security.KeyAgreement;
 
 /**
  * @author Vasilios Mavroudis and Petr Svenda and Antonin Dufka
  */
 public class UnitTests extends Applet {
     public final static short CARD_TYPE = OperationSupport.SIMULATOR; // TODO set your card
+    public final static short BATCH_SIZE = 4; // number of values in batch operation tests
+    public final static short POINT_BATCH_SIZE = 3; // number of points in batch multiplication test, fits a short APDU
 
     public final static byte CLA_OC_UT = (byte) 0xB0;
     public final static byte INS_CLEANUP = (byte) 0x03;
@@ -42,6 +45,11 @@ public class UnitTests extends Applet {
     public final static byte INS_BN_MUL_SCHOOL = (byte) 0x27;
     public final static byte INS_BN_SET_VALUE = (byte) 0x28;
     public final static byte INS_BN_SHIFT_LEFT = (byte) 0x29;
+    public final static byte INS_BN_MUL_KARATSUBA = (byte) 0x2a;
+    public final static byte INS_BN_SQ_SCHOOL = (byte) 0x2b;
+    public final static byte INS_BN_MOD_BARRETT = (byte) 0x2c;
+    public final static byte INS_BN_MOD_FAST = (byte) 0x2d;
+    public final static byte INS_BN_GCD = (byte) 0x2e;
 
     public final static byte INS_BN_ADD_MOD = (byte) 0x30;
     public final static byte INS_BN_SUB_MOD = (byte) 0x31;
@@ -50,17 +58,36 @@ public class UnitTests extends Applet {
     public final static byte INS_BN_INV_MOD = (byte) 0x34;
     public final static byte INS_BN_SQ_MOD = (byte) 0x35;
     public final static byte INS_BN_SQRT_MOD = (byte) 0x36;
+    public final static byte INS_BN_MUL_MONT = (byte) 0x37;
+    public final static byte INS_BN_INV_MOD_BINARY = (byte) 0x38;
+    public final static byte INS_BN_INV_MOD_BATCH = (byte) 0x39;
+    public final static byte INS_BN_EXP_MOD_WINDOW = (byte) 0x3a;
+    public final static byte INS_BN_JACOBI = (byte) 0x3b;
+    public final static byte INS_BN_MUL_ADD_MOD = (byte) 0x3c;
+    public final static byte INS_BN_MUL_SUB_MOD = (byte) 0x3d;
+    public final static byte INS_FE_CHAIN = (byte) 0x3e;
+
+    public final static byte INS_BNS_ADD = (byte) 0x50;
+    public final static byte INS_BNS_MUL = (byte) 0x51;
 
     public final static byte INS_EC_GEN = (byte) 0x40;
     public final static byte INS_EC_DBL = (byte) 0x41;
     public final static byte INS_EC_ADD = (byte) 0x42;
     public final static byte INS_EC_MUL = (byte) 0x43;
     public final static byte INS_EC_NEG = (byte) 0x44;
+    public final static byte INS_EC_NORMALIZE_BATCH = (byte) 0x45;
     public final static byte INS_EC_COMPARE = (byte) 0x46;
     public final static byte INS_EC_FROM_X = (byte) 0x47;
     public final static byte INS_EC_IS_Y_EVEN = (byte) 0x48;
     public final static byte INS_EC_MUL_ADD = (byte) 0x49;
     public final static byte INS_EC_ENCODE = (byte) 0x4a;
+    public final static byte INS_EC_SW_CHAIN = (byte) 0x4b;
+    public final static byte INS_EC_SW_MUL = (byte) 0x4c;
+    public final static byte INS_EC_MUL_G = (byte) 0x4d;
+    public final static byte INS_EC_MULTI_MUL = (byte) 0x4e;
+    public final static byte INS_EC_SW_COORDS = (byte) 0x4f;
+    public final static byte INS_EC_MUL_BATCH = (byte) 0x60;
+    public final static byte INS_EC_MUL_X_RECOVER = (byte) 0x61;
 
     // Specific codes to propagate exceptions caught
     // lower byte of exception is value as defined in JCSDK/api_classic/constant-values.htm
@@ -85,10 +112,24 @@ public class UnitTests extends Applet {
     ECCurve curve;
     ECPoint point1;
     ECPoint point2;
+    ECPoint point3;
+    ECPoint[] points;
+    ECPoint[] pointBatch;
+    KeyAgreement xOnlyKA; // X-only KeyAgreement for multiplication with y recovered in software
 
     BigNat bn1;
     BigNat bn2;
     BigNat bn3;
+    BigNat[] bnPair;
+    BigNat[] bnBatch;
+    BigNat[] bnBatchProducts;
+    BigNatShort bns1;
+    BigNatShort bns2;
+    BigNatShort bns3;
+    FieldElement fe1;
+    FieldElement fe2;
+    FieldElement fe3;
+    FieldElement[] fePair;
 
     Integer int1;
     Integer int2;
@@ -118,6 +159,11 @@ public class UnitTests extends Applet {
         point1 = new ECPoint(curve);
         memoryInfoOffset = snapshotAvailableMemory((short) 6, memoryInfo, memoryInfoOffset);
         point2 = new ECPoint(curve);
+        points = new ECPoint[]{point1, point2};
+        point3 = new ECPoint(curve);
+        pointBatch = new ECPoint[]{point1, point2, point3};
+        // xOnlyKA = KeyAgreement.getInstance(KeyAgreement.ALG_EC_SVDP_DH_PLAIN, false);
+        xOnlyKA = KeyAgreement.getInstance((byte) 3, false);
 
         // Testing BigNat objects used in tests
         memoryInfoOffset = snapshotAvailableMemory((short) 7, memoryInfo, memoryInfoOffset);
@@ -126,6 +172,21 @@ public class UnitTests extends Applet {
         memoryInfoOffset = snapshotAvailableMemory((short) 8, memoryInfo, memoryInfoOffset);
         bn2 = new BigNat(rm.MAX_BIGNAT_SIZE, memoryType, rm);
         bn3 = new BigNat(rm.MAX_BIGNAT_SIZE, memoryType, rm);
+        bnPair = new BigNat[]{bn1, bn2};
+        bnBatch = new BigNat[BATCH_SIZE];
+        bnBatchProducts = new BigNat[BATCH_SIZE];
+        for (short i = 0; i < BATCH_SIZE; i++) {
+            bnBatch[i] = new BigNat(curve.COORD_SIZE, memoryType, rm);
+            bnBatchProducts[i] = new BigNat(curve.COORD_SIZE, memoryType, rm);
+        }
+        bns1 = new BigNatShort(rm.MAX_BIGNAT_SIZE, memoryType, rm);
+        bns2 = new BigNatShort(rm.MAX_BIGNAT_SIZE, memoryType, rm);
+        bns3 = new BigNatShort(rm.MAX_BIGNAT_SIZE, memoryType, rm);
+
+        fe1 = new FieldElement(curve, memoryType);
+        fe2 = new FieldElement(curve, memoryType);
+        fe3 = new FieldElement(curve, memoryType);
+        fePair = new FieldElement[]{fe1, fe2};
 
         short intLen = 4;
         int1 = new Integer(intLen, rm);
@@ -201,6 +262,9 @@ public class UnitTests extends Applet {
                 case INS_EC_MUL:
                     testEcMul(apdu);
                     break;
+                case INS_EC_NORMALIZE_BATCH:
+                    testEcNormalizeBatch(apdu);
+                    break;
                 case INS_EC_NEG:
                     testEcNeg(apdu);
                     break;
@@ -219,6 +283,27 @@ public class UnitTests extends Applet {
                 case INS_EC_ENCODE:
                     testEcEncode(apdu);
                     break;
+                case INS_EC_SW_CHAIN:
+                    testEcSwChain(apdu);
+                    break;
+                case INS_EC_SW_MUL:
+                    testEcSwMul(apdu);
+                    break;
+                case INS_EC_MUL_G:
+                    testEcMulG(apdu);
+                    break;
+                case INS_EC_MULTI_MUL:
+                    testEcMultiMul(apdu);
+                    break;
+                case INS_EC_SW_COORDS:
+                    testEcSwCoords(apdu);
+                    break;
+                case INS_EC_MUL_BATCH:
+                    testEcMulBatch(apdu);
+                    break;
+                case INS_EC_MUL_X_RECOVER:
+                    testEcMulXRecover(apdu);
+                    break;
 
                 case INS_BN_STR:
                     testBnStr(apdu, dataLen);
@@ -232,6 +317,12 @@ public class UnitTests extends Applet {
                 case INS_BN_MUL:
                     testBnMul(apdu, dataLen);
                     break;
+                case INS_BNS_ADD:
+                    testBnsAdd(apdu, dataLen);
+                    break;
+                case INS_BNS_MUL:
+                    testBnsMul(apdu, dataLen);
+                    break;
                 case INS_BN_SHIFT_RIGHT:
                     testBnShiftRight(apdu, dataLen);
                     break;
@@ -241,6 +332,21 @@ public class UnitTests extends Applet {
                 case INS_BN_MUL_SCHOOL:
                     testBnMulSchool(apdu, dataLen);
                     break;
+                case INS_BN_MUL_KARATSUBA:
+                    testBnMulKaratsuba(apdu, dataLen);
+                    break;
+                case INS_BN_SQ_SCHOOL:
+                    testBnSqSchool(apdu, dataLen);
+                    break;
+                case INS_BN_MOD_BARRETT:
+                    testBnModBarrett(apdu, dataLen);
+                    break;
+                case INS_BN_MOD_FAST:
+                    testBnModFast(apdu, dataLen);
+                    break;
+                case INS_BN_GCD:
+                    testBnGcd(apdu, dataLen);
+                    break;
                 case INS_BN_SQ:
                     testBnSq(apdu, dataLen);
                     break;
@@ -272,6 +378,30 @@ public class UnitTests extends Applet {
                 case INS_BN_SQRT_MOD:
                     testBnModSqrt(apdu, dataLen);
                     break;
+                case INS_BN_MUL_MONT:
+                    testBnMulMont(apdu, dataLen);
+                    break;
+                case INS_BN_INV_MOD_BINARY:
+                    testBnInvModBinary(apdu, dataLen);
+                    break;
+                case INS_BN_INV_MOD_BATCH:
+                    testBnInvModBatch(apdu, dataLen);
+                    break;
+                case INS_BN_EXP_MOD_WINDOW:
+                    testBnExpModWindow(apdu, dataLen);
+                    break;
+                case INS_BN_JACOBI:
+                    testBnJacobi(apdu, dataLen);
+                    break;
+                case INS_BN_MUL_ADD_MOD:
+                    testBnMulAddMod(apdu, dataLen);
+                    break;
+                case INS_BN_MUL_SUB_MOD:
+                    testBnMulSubMod(apdu, dataLen);
+                    break;
+                case INS_FE_CHAIN:
+                    testFeChain(apdu, dataLen);
+                    break;
 
                 case INS_INT_STR:
                     testIntStr(apdu, dataLen);
@@ -371,6 +501,55 @@ public class UnitTests extends Applet {
         apdu.setOutgoingAndSend((short) 0, len);
     }
 
+    void testEcSwChain(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        // -(2 (... (2 (2 P + Q) + Q) ...) + Q) with p1 steps computed in Jacobian coordinates
+        point1.setW(apduBuffer, ISO7816.OFFSET_CDATA, curve.POINT_SIZE);
+        point2.setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + curve.POINT_SIZE), curve.POINT_SIZE);
+        boolean previous = OperationSupport.getInstance().EC_HW_ADD;
+        OperationSupport.getInstance().EC_HW_ADD = false;
+        try {
+            for (short i = 0; i < p1; i++) {
+                point1.swDoubleLazy();
+                point1.addLazy(point2);
+            }
+            point1.negate();
+        } finally {
+            OperationSupport.getInstance().EC_HW_ADD = previous;
+        }
+
+        short len = point1.getW(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testEcSwCoords(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+
+        // x, y and parity of y of P + Q read from the cached coordinates, then -(P + Q) serialized
+        point1.setW(apduBuffer, ISO7816.OFFSET_CDATA, curve.POINT_SIZE);
+        point2.setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + curve.POINT_SIZE), curve.POINT_SIZE);
+        boolean previous = OperationSupport.getInstance().EC_HW_ADD;
+        boolean previousCache = OperationSupport.getInstance().EC_POINT_CACHE;
+        OperationSupport.getInstance().EC_HW_ADD = false;
+        OperationSupport.getInstance().EC_POINT_CACHE = true;
+        short len;
+        try {
+            point1.add(point2);
+            len = point1.getX(apduBuffer, (short) 0);
+            len += point1.getY(apduBuffer, len);
+            apduBuffer[len] = point1.isYEven() ? (byte) 1 : (byte) 0;
+            len++;
+            point1.negate();
+            len += point1.getW(apduBuffer, len);
+        } finally {
+            OperationSupport.getInstance().EC_HW_ADD = previous;
+            OperationSupport.getInstance().EC_POINT_CACHE = previousCache;
+        }
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
     void testEcMul(APDU apdu) {
         byte[] apduBuffer = apdu.getBuffer();
         short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
@@ -383,6 +562,118 @@ public class UnitTests extends Applet {
         apdu.setOutgoingAndSend((short) 0, len);
     }
 
+    void testEcSwMul(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        point1.setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), curve.POINT_SIZE);
+        point1.swMultiplication(bn1);
+
+        short len = point1.getW(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testEcMulG(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        point1.multiplyGenerator(bn1);
+
+        short len = point1.getW(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testEcMultiMul(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+        short p2 = (short) (apduBuffer[ISO7816.OFFSET_P2] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), p2);
+        point1.setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1 + p2), curve.POINT_SIZE);
+        point2.setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1 + p2 + curve.POINT_SIZE), curve.POINT_SIZE);
+        point1.multiScalarMult(bnPair, points);
+
+        short len = point1.getW(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testEcMulBatch(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        for (short i = 0; i < POINT_BATCH_SIZE; i++) {
+            pointBatch[i].setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1 + i * curve.POINT_SIZE), curve.POINT_SIZE);
+        }
+        ECPoint.multiplicationBatch(bn1, pointBatch, POINT_BATCH_SIZE, bnBatch);
+
+        short len = 0;
+        for (short i = 0; i < POINT_BATCH_SIZE; i++) {
+            len += pointBatch[i].getW(apduBuffer, len);
+        }
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testEcMulXRecover(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+        short p2 = (short) (apduBuffer[ISO7816.OFFSET_P2] & 0x00FF);
+
+        // P2 = 0 multiplies a single point, otherwise a batch of POINT_BATCH_SIZE points
+        short count = p2 == 0 ? (short) 1 : POINT_BATCH_SIZE;
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        for (short i = 0; i < count; i++) {
+            pointBatch[i].setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1 + i * curve.POINT_SIZE), curve.POINT_SIZE);
+        }
+        KeyAgreement previousKA = rm.ecMultKA;
+        boolean previousSwMult = OperationSupport.getInstance().EC_SW_MULT;
+        boolean previousEcdsa = OperationSupport.getInstance().EC_HW_X_ECDSA;
+        rm.ecMultKA = xOnlyKA;
+        OperationSupport.getInstance().EC_SW_MULT = false;
+        OperationSupport.getInstance().EC_HW_X_ECDSA = false;
+        try {
+            if (p2 == 0) {
+                point1.multiplication(bn1);
+            } else {
+                ECPoint.multiplicationBatch(bn1, pointBatch, count, bnBatch);
+            }
+        } finally {
+            rm.ecMultKA = previousKA;
+            OperationSupport.getInstance().EC_SW_MULT = previousSwMult;
+            OperationSupport.getInstance().EC_HW_X_ECDSA = previousEcdsa;
+        }
+
+        short len = 0;
+        for (short i = 0; i < count; i++) {
+            len += pointBatch[i].getW(apduBuffer, len);
+        }
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testEcNormalizeBatch(APDU apdu) {
+        byte[] apduBuffer = apdu.getBuffer();
+
+        // P + Q and 2Q computed in Jacobian coordinates, normalized together and serialized
+        point1.setW(apduBuffer, ISO7816.OFFSET_CDATA, curve.POINT_SIZE);
+        point2.setW(apduBuffer, (short) (ISO7816.OFFSET_CDATA + curve.POINT_SIZE), curve.POINT_SIZE);
+        boolean previous = OperationSupport.getInstance().EC_HW_ADD;
+        OperationSupport.getInstance().EC_HW_ADD = false;
+        try {
+            point1.add(point2);
+        } finally {
+            OperationSupport.getInstance().EC_HW_ADD = previous;
+        }
+        point2.swDouble();
+        ECPoint.normalizeBatch(points, (short) 2, fePair);
+
+        short len = point1.getW(apduBuffer, (short) 0);
+        len += point2.getW(apduBuffer, len);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
     void testEcMulAdd(APDU apdu) {
         byte[] apduBuffer = apdu.getBuffer();
         short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
@@ -500,6 +791,31 @@ public class UnitTests extends Applet {
         apdu.setOutgoingAndSend((short) 0, len);
     }
 
+    void testBnsAdd(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bns1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bns2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        bns3.setSize((short) (p1 + 1));
+        bns3.copy(bns1);
+        bns3.add(bns2);
+        short len = bns3.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testBnsMul(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bns1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bns2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        bns3.clone(bns1);
+        bns3.mult(bns2);
+        short len = bns3.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
     void testBnSq(APDU apdu, short dataLen) {
         byte[] apduBuffer = apdu.getBuffer();
 
@@ -509,6 +825,39 @@ public class UnitTests extends Applet {
         apdu.setOutgoingAndSend((short) 0, len);
     }
 
+    void testBnSqSchool(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, dataLen);
+        boolean previous = OperationSupport.getInstance().RSA_SQ;
+        OperationSupport.getInstance().RSA_SQ = false;
+        try {
+            bn1.sq();
+        } finally {
+            OperationSupport.getInstance().RSA_SQ = previous;
+        }
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testBnModBarrett(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, dataLen);
+        bn1.mod(curve.pBN, curve.pBarrett);
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testBnModFast(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, dataLen);
+        bn1.mod(curve.pBN, curve.pFast);
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
     void testBnShiftRight(APDU apdu, short dataLen) {
         byte[] apduBuffer = apdu.getBuffer();
         short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
@@ -536,10 +885,37 @@ public class UnitTests extends Applet {
         bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
         bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
         boolean previous = OperationSupport.getInstance().RSA_SQ;
+        short previousKaratsuba = OperationSupport.getInstance().KARATSUBA_MIN_LENGTH;
         OperationSupport.getInstance().RSA_SQ = false;
-        bn3.clone(bn1);
-        bn3.mult(bn2);
-        OperationSupport.getInstance().RSA_SQ = previous;
+        OperationSupport.getInstance().KARATSUBA_MIN_LENGTH = 0;
+        try {
+            bn3.clone(bn1);
+            bn3.mult(bn2);
+        } finally {
+            OperationSupport.getInstance().RSA_SQ = previous;
+            OperationSupport.getInstance().KARATSUBA_MIN_LENGTH = previousKaratsuba;
+        }
+        short len = bn3.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testBnMulKaratsuba(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        boolean previous = OperationSupport.getInstance().RSA_SQ;
+        short previousKaratsuba = OperationSupport.getInstance().KARATSUBA_MIN_LENGTH;
+        OperationSupport.getInstance().RSA_SQ = false;
+        OperationSupport.getInstance().KARATSUBA_MIN_LENGTH = 1;
+        try {
+            bn3.clone(bn1);
+            bn3.mult(bn2);
+        } finally {
+            OperationSupport.getInstance().RSA_SQ = previous;
+            OperationSupport.getInstance().KARATSUBA_MIN_LENGTH = previousKaratsuba;
+        }
         short len = bn3.copyToByteArray(apduBuffer, (short) 0);
         apdu.setOutgoingAndSend((short) 0, len);
     }
@@ -555,6 +931,17 @@ public class UnitTests extends Applet {
         apdu.setOutgoingAndSend((short) 0, len);
     }
 
+    void testBnGcd(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        bn1.gcd(bn2);
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
     void testBnSetValue(APDU apdu, short dataLen) {
         byte[] apduBuffer = apdu.getBuffer();
         short len = 0;
@@ -612,6 +999,83 @@ public class UnitTests extends Applet {
         apdu.setOutgoingAndSend((short) 0, len);
     }
 
+    void testBnMulAddMod(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+        short p2 = (short) (apduBuffer[ISO7816.OFFSET_P2] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), p2);
+        bn3.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1 + p2), (short) (dataLen - p1 - p2));
+        boolean previous = OperationSupport.getInstance().RSA_SQ;
+        OperationSupport.getInstance().RSA_SQ = false;
+        try {
+            bn1.modMultAdd(bn2, bn3, curve.pBN);
+        } finally {
+            OperationSupport.getInstance().RSA_SQ = previous;
+        }
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testBnMulSubMod(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+        short p2 = (short) (apduBuffer[ISO7816.OFFSET_P2] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), p2);
+        bn3.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1 + p2), (short) (dataLen - p1 - p2));
+        boolean previous = OperationSupport.getInstance().RSA_SQ;
+        OperationSupport.getInstance().RSA_SQ = false;
+        try {
+            bn1.modMultSub(bn2, bn3, curve.pBN);
+        } finally {
+            OperationSupport.getInstance().RSA_SQ = previous;
+        }
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testFeChain(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+        short p2 = (short) (apduBuffer[ISO7816.OFFSET_P2] & 0x00FF);
+
+        // (b * ((a + p2 * b) * (b - p2 * a) - a) + (b - p2 * a)) mod p
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        fe1.set(bn1);
+        fe2.set(bn2);
+        for (short i = 0; i < p2; i++) {
+            fe2.subtract(fe1);
+        }
+        for (short i = 0; i < p2; i++) {
+            fe1.add(bn2);
+        }
+        fe3.set(bn1);
+        fe1.multSubtract(fe2, fe3);
+        fe3.set(bn2);
+        fe3.multAdd(fe1, fe2);
+        fe3.prependZeros(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, curve.COORD_SIZE);
+    }
+
+    void testBnMulMont(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        MontgomeryContext pMont = curve.getMontgomeryContext();
+        bn1.toMont(pMont);
+        bn2.toMont(pMont);
+        bn1.montMul(bn2, pMont);
+        bn1.fromMont(pMont);
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
     void testBnExpMod(APDU apdu, short dataLen) {
         byte[] apduBuffer = apdu.getBuffer();
         short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
@@ -647,6 +1111,68 @@ public class UnitTests extends Applet {
         apdu.setOutgoingAndSend((short) 0, len);
     }
 
+    void testBnExpModWindow(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+        short p2 = (short) (apduBuffer[ISO7816.OFFSET_P2] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), p2);
+        bn3.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1 + p2), (short) (dataLen - p1 - p2));
+        boolean previous = OperationSupport.getInstance().RSA_EXP;
+        OperationSupport.getInstance().RSA_EXP = false;
+        try {
+            bn1.modExp(bn2, bn3);
+        } finally {
+            OperationSupport.getInstance().RSA_EXP = previous;
+        }
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testBnJacobi(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        apduBuffer[0] = bn1.jacobiSymbol(bn2);
+        apdu.setOutgoingAndSend((short) 0, (short) 1);
+    }
+
+    void testBnInvModBinary(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short p1 = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        bn1.fromByteArray(apduBuffer, ISO7816.OFFSET_CDATA, p1);
+        bn2.fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + p1), (short) (dataLen - p1));
+        boolean previous = OperationSupport.getInstance().RSA_INV;
+        OperationSupport.getInstance().RSA_INV = false;
+        try {
+            bn1.modInv(bn2);
+        } finally {
+            OperationSupport.getInstance().RSA_INV = previous;
+        }
+        short len = bn1.copyToByteArray(apduBuffer, (short) 0);
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
+    void testBnInvModBatch(APDU apdu, short dataLen) {
+        byte[] apduBuffer = apdu.getBuffer();
+        short count = (short) (apduBuffer[ISO7816.OFFSET_P1] & 0x00FF);
+
+        for (short i = 0; i < count; i++) {
+            bnBatch[i].fromByteArray(apduBuffer, (short) (ISO7816.OFFSET_CDATA + i * curve.COORD_SIZE), curve.COORD_SIZE);
+        }
+        BigNat.modInvBatch(bnBatch, count, bnBatchProducts, curve.pBN);
+        short len = 0;
+        for (short i = 0; i < count; i++) {
+            bnBatch[i].prependZeros(curve.COORD_SIZE, apduBuffer, len);
+            len += curve.COORD_SIZE;
+        }
+        apdu.setOutgoingAndSend((short) 0, len);
+    }
+
     void testIntStr(APDU apdu, short dataLen) {
         byte[] apduBuffer = apdu.getBuffer();
 
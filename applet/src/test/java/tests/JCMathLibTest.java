@@ -14,6 +14,7 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.jce.spec.ECParameterSpec;
 import org.bouncycastle.math.ec.ECCurve;
 import org.bouncycastle.math.ec.ECPoint;
+import org.bouncycastle.util.BigIntegers;
 import org.junit.jupiter.api.*;
 
 import java.io.BufferedWriter;
@@ -97,6 +98,25 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void eccSwChain() throws Exception {
+            perfMap.put("eccSwChain/INS_EC_SW_CHAIN", new Long(-1));
+            ECPoint point1 = randECPoint();
+            ECPoint point2 = randECPoint();
+            int steps = 8;
+            ECPoint result = point1;
+            for (int i = 0; i < steps; ++i) {
+                result = result.twice().add(point2);
+            }
+            result = result.negate().normalize();
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_SW_CHAIN, steps, 0, Util.concat(point1.getEncoded(false), point2.getEncoded(false)));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccSwChain/INS_EC_SW_CHAIN", statefulCard.getLastTransmitTime());
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(result.getEncoded(false), resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void eccNegation() throws Exception {
             perfMap.put("eccNegation/INS_EC_NEG", new Long(-1));
@@ -111,6 +131,40 @@ public class JCMathLibTest extends BaseTest {
             cardMngr.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void eccSwCoordinates() throws Exception {
+            perfMap.put("eccSwCoordinates/INS_EC_SW_COORDS", new Long(-1));
+            ECPoint point1 = randECPoint();
+            ECPoint point2 = randECPoint();
+            ECPoint sum = point1.add(point2).normalize();
+            byte[] x = BigIntegers.asUnsignedByteArray(32, sum.getAffineXCoord().toBigInteger());
+            byte[] y = BigIntegers.asUnsignedByteArray(32, sum.getAffineYCoord().toBigInteger());
+            byte[] yEven = {(byte) (sum.getAffineYCoord().toBigInteger().testBit(0) ? 0 : 1)};
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_SW_COORDS, 0, 0, Util.concat(point1.getEncoded(false), point2.getEncoded(false)));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccSwCoordinates/INS_EC_SW_COORDS", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(Util.concat(Util.concat(x, y), Util.concat(yEven, sum.negate().getEncoded(false))), resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void eccNormalizeBatch() throws Exception {
+            perfMap.put("eccNormalizeBatch/INS_EC_NORMALIZE_BATCH", new Long(-1));
+            ECPoint point1 = randECPoint();
+            ECPoint point2 = randECPoint();
+            ECPoint sum = point1.add(point2);
+            ECPoint doubled = point2.twice();
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_NORMALIZE_BATCH, 0, 0, Util.concat(point1.getEncoded(false), point2.getEncoded(false)));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccNormalizeBatch/INS_EC_NORMALIZE_BATCH", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(Util.concat(sum.getEncoded(false), doubled.getEncoded(false)), resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void eccMultiplyGenerator() throws Exception {
             perfMap.put("eccMultiplyGenerator/INS_EC_MUL", new Long(-1));
@@ -126,6 +180,38 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void eccMultiplyGeneratorComb() throws Exception {
+            perfMap.put("eccMultiplyGeneratorComb/INS_EC_MUL_G", new Long(-1));
+            BigInteger scalar = randomBigNat(BIGNAT_BIT_LENGTH);
+            ECPoint result = CURVE_SPEC.getG().multiply(scalar);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_MUL_G, scalar.toByteArray().length, 0, scalar.toByteArray());
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccMultiplyGeneratorComb/INS_EC_MUL_G", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(result.getEncoded(false), resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void eccMultiScalarMult() throws Exception {
+            perfMap.put("eccMultiScalarMult/INS_EC_MULTI_MUL", new Long(-1));
+            ECPoint point1 = randECPoint();
+            ECPoint point2 = randECPoint();
+            BigInteger scalar1 = randomBigNat(BIGNAT_BIT_LENGTH);
+            BigInteger scalar2 = randomBigNat(BIGNAT_BIT_LENGTH);
+            ECPoint result = point1.multiply(scalar1).add(point2.multiply(scalar2)).normalize();
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_MULTI_MUL, scalar1.toByteArray().length, scalar2.toByteArray().length,
+                    Util.concat(Util.concat(scalar1.toByteArray(), scalar2.toByteArray()), Util.concat(point1.getEncoded(false), point2.getEncoded(false))));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccMultiScalarMult/INS_EC_MULTI_MUL", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(result.getEncoded(false), resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void eccMultiplyRandom() throws Exception {
             perfMap.put("eccMultiplyRandom/INS_EC_MUL", new Long(-1));
@@ -141,6 +227,78 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void eccMultiplyBatch() throws Exception {
+            perfMap.put("eccMultiplyBatch/INS_EC_MUL_BATCH", new Long(-1));
+            BigInteger scalar = randomBigNat(BIGNAT_BIT_LENGTH);
+            byte[] data = scalar.toByteArray();
+            byte[] expected = new byte[0];
+            for (int i = 0; i < UnitTests.POINT_BATCH_SIZE; ++i) {
+                ECPoint point = randECPoint();
+                data = Util.concat(data, point.getEncoded(false));
+                expected = Util.concat(expected, point.multiply(scalar).getEncoded(false));
+            }
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_MUL_BATCH, scalar.toByteArray().length, 0, data);
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccMultiplyBatch/INS_EC_MUL_BATCH", statefulCard.getLastTransmitTime());
+            perfMap.put("eccMultiplyBatch/INS_EC_MUL_BATCH per point", statefulCard.getLastTransmitTime() / UnitTests.POINT_BATCH_SIZE);
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(expected, resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void eccMultiplyXRecover() throws Exception {
+            perfMap.put("eccMultiplyXRecover/INS_EC_MUL_X_RECOVER", new Long(-1));
+            ECPoint point = randECPoint();
+            BigInteger scalar = randomBigNat(BIGNAT_BIT_LENGTH);
+            ECPoint result = point.multiply(scalar);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_MUL_X_RECOVER, scalar.toByteArray().length, 0, Util.concat(scalar.toByteArray(), point.getEncoded(false)));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccMultiplyXRecover/INS_EC_MUL_X_RECOVER", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(result.getEncoded(false), resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void eccMultiplyXRecoverBatch() throws Exception {
+            perfMap.put("eccMultiplyXRecoverBatch/INS_EC_MUL_X_RECOVER", new Long(-1));
+            BigInteger scalar = randomBigNat(BIGNAT_BIT_LENGTH);
+            byte[] data = scalar.toByteArray();
+            byte[] expected = new byte[0];
+            for (int i = 0; i < UnitTests.POINT_BATCH_SIZE; ++i) {
+                ECPoint point = randECPoint();
+                data = Util.concat(data, point.getEncoded(false));
+                expected = Util.concat(expected, point.multiply(scalar).getEncoded(false));
+            }
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_MUL_X_RECOVER, scalar.toByteArray().length, 1, data);
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccMultiplyXRecoverBatch/INS_EC_MUL_X_RECOVER", statefulCard.getLastTransmitTime());
+            perfMap.put("eccMultiplyXRecoverBatch/INS_EC_MUL_X_RECOVER per point", statefulCard.getLastTransmitTime() / UnitTests.POINT_BATCH_SIZE);
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(expected, resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void eccSwMultiplyRandom() throws Exception {
+            perfMap.put("eccSwMultiplyRandom/INS_EC_SW_MUL", new Long(-1));
+            ECPoint point = randECPoint();
+            BigInteger scalar = randomBigNat(BIGNAT_BIT_LENGTH);
+            ECPoint result = point.multiply(scalar);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_SW_MUL, scalar.toByteArray().length, 0, Util.concat(scalar.toByteArray(), point.getEncoded(false)));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("eccSwMultiplyRandom/INS_EC_SW_MUL", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertArrayEquals(result.getEncoded(false), resp.getData());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void eccIsEqual() throws Exception {
             perfMap.put("eccIsEqual/INS_EC_COMPARE", new Long(-1));
@@ -276,6 +434,24 @@ public class JCMathLibTest extends BaseTest {
 
             cardMngr.transmit(new CommandAPDU(APDU_CLEANUP));
         }
+
+        @Test
+        public void eccDecodeInvalid() throws Exception {
+            // Compressed point with x such that x^3 + ax + b is a quadratic non-residue, i.e., not on the curve
+            BigInteger p = new BigInteger(1, CURVE_P);
+            BigInteger a = new BigInteger(1, CURVE_A);
+            BigInteger b = new BigInteger(1, CURVE_B);
+            BigInteger x;
+            do {
+                x = randomBigNat(BIGNAT_BIT_LENGTH).mod(p);
+            } while (x.pow(3).add(a.multiply(x)).add(b).mod(p).modPow(p.shiftRight(1), p).equals(BigInteger.ONE));
+            byte[] point = Util.concat(new byte[]{0x02}, BigIntegers.asUnsignedByteArray(CURVE_P.length, x));
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_EC_ENCODE, point.length, 0, point);
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+
+            Assertions.assertEquals(ReturnCodes.SW_ECPOINT_INVALID & 0xffff, resp.getSW());
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
     }
 
     @Nested
@@ -339,6 +515,36 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatShortAddition() throws Exception {
+            perfMap.put("bigNatShortAddition/INS_BNS_ADD", new Long(-1));
+            BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH - 1);
+            BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH - 1);
+            BigInteger result = num1.add(num2);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BNS_ADD, num1.toByteArray().length, 0, Util.concat(num1.toByteArray(), num2.toByteArray()));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatShortAddition/INS_BNS_ADD", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatShortMultiplication() throws Exception {
+            perfMap.put("bigNatShortMultiplication/INS_BNS_MUL", new Long(-1));
+            BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH);
+            BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH);
+            BigInteger result = num1.multiply(num2);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BNS_MUL, num1.toByteArray().length, 0, Util.concat(num1.toByteArray(), num2.toByteArray()));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatShortMultiplication/INS_BNS_MUL", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatSq() throws Exception {
             perfMap.put("bigNatSq/INS_BN_SQ", new Long(-1));
@@ -353,6 +559,20 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatSqSchool() throws Exception {
+            perfMap.put("bigNatSqSchool/INS_BN_SQ_SCHOOL", new Long(-1));
+            BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH);
+            BigInteger result = num1.multiply(num1);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_SQ_SCHOOL, 0, 0, num1.toByteArray());
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatSqSchool/INS_BN_SQ_SCHOOL", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatShiftRight() throws Exception {
             perfMap.put("bigNatShiftRight(8b)/INS_BN_SHIFT_RIGHT", new Long(-1));
@@ -385,6 +605,40 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatShiftRightLong() throws Exception {
+            perfMap.put("bigNatShiftRight(long)/INS_BN_SHIFT_RIGHT", new Long(-1));
+            int[] shifts = {8, 13, 64, 100, 255};
+            for (int bits : shifts) {
+                BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH);
+                BigInteger result = num1.shiftRight(bits);
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_SHIFT_RIGHT, bits, 0, num1.toByteArray());
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatShiftRight(long)/INS_BN_SHIFT_RIGHT", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatShiftLeftLong() throws Exception {
+            perfMap.put("bigNatShiftLeft(long)/INS_BN_SHIFT_LEFT", (long) -1);
+            int[] shifts = {8, 13, 64, 100, 200};
+            for (int bits : shifts) {
+                BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH);
+                BigInteger result = num1.shiftLeft(bits);
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_SHIFT_LEFT, bits, 0, num1.toByteArray());
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatShiftLeft(long)/INS_BN_SHIFT_LEFT", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatMultiplicationSlow() throws Exception {
             perfMap.put("bigNatMultiplicationSlow/INS_BN_MUL_SCHOOL", new Long(-1));
@@ -400,6 +654,21 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatMultiplicationKaratsuba() throws Exception {
+            perfMap.put("bigNatMultiplicationKaratsuba/INS_BN_MUL_KARATSUBA", new Long(-1));
+            BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH);
+            BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH);
+            BigInteger result = num1.multiply(num2);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_MUL_KARATSUBA, num1.toByteArray().length, 0, Util.concat(num1.toByteArray(), num2.toByteArray()));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatMultiplicationKaratsuba/INS_BN_MUL_KARATSUBA", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatMod() throws Exception {
             perfMap.put("bigNatMod/INS_BN_MOD", new Long(-1));
@@ -415,6 +684,52 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatModBarrett() throws Exception {
+            perfMap.put("bigNatModBarrett/INS_BN_MOD_BARRETT", new Long(-1));
+            BigInteger num1 = randomBigNat(2 * BIGNAT_BIT_LENGTH);
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            BigInteger result = num1.mod(mod);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_MOD_BARRETT, 0, 0, Util.trimLeadingZeroes(num1.toByteArray()));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatModBarrett/INS_BN_MOD_BARRETT", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatModFast() throws Exception {
+            perfMap.put("bigNatModFast/INS_BN_MOD_FAST", new Long(-1));
+            BigInteger num1 = randomBigNat(2 * BIGNAT_BIT_LENGTH);
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            BigInteger result = num1.mod(mod);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_MOD_FAST, 0, 0, Util.trimLeadingZeroes(num1.toByteArray()));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatModFast/INS_BN_MOD_FAST", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatGcd() throws Exception {
+            perfMap.put("bigNatGcd/INS_BN_GCD", new Long(-1));
+            BigInteger factor = randomBigNat(BIGNAT_BIT_LENGTH / 4).shiftLeft(3);
+            BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH).multiply(factor);
+            BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH).multiply(factor);
+            BigInteger result = num1.gcd(num2);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_GCD, Util.trimLeadingZeroes(num1.toByteArray()).length, 0, Util.concat(Util.trimLeadingZeroes(num1.toByteArray()), Util.trimLeadingZeroes(num2.toByteArray())));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatGcd/INS_BN_GCD", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatSetValue() throws Exception {
             perfMap.put("bigNatSetValue/INS_BN_SET_VALUE", new Long(-1));
@@ -448,6 +763,48 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatModSqrtForms() throws Exception {
+            perfMap.put("bigNatModSqrtForms/INS_BN_SQRT_MOD", new Long(-1));
+            // p = 5 mod 8 (Atkin's method) and p = 1 mod 8 (Tonelli Shanks)
+            BigInteger[] mods = {new BigInteger(1, Wei25519.p), BigInteger.ONE.shiftLeft(224).subtract(BigInteger.ONE.shiftLeft(96)).add(BigInteger.ONE)};
+            for (BigInteger mod : mods) {
+                BigInteger num = randomBigNat(mod.bitLength() - 1);
+                // Sample num until we get a quadratic residue
+                while (!num.modPow(mod.subtract(BigInteger.valueOf(1)).divide(BigInteger.valueOf(2)), mod).equals(BigInteger.valueOf(1))) {
+                    num = randomBigNat(mod.bitLength() - 1);
+                }
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_SQRT_MOD, Util.trimLeadingZeroes(num.toByteArray()).length, 0, Util.concat(Util.trimLeadingZeroes(num.toByteArray()), Util.trimLeadingZeroes(mod.toByteArray())));
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatModSqrtForms/INS_BN_SQRT_MOD", statefulCard.getLastTransmitTime());
+
+                BigInteger receivedResult = new BigInteger(1, resp.getData());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(receivedResult.modPow(BigInteger.valueOf(2), mod), num);
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatJacobi() throws Exception {
+            perfMap.put("bigNatJacobi/INS_BN_JACOBI", new Long(-1));
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            for (int i = 0; i < 4; ++i) {
+                BigInteger num = randomBigNat(BIGNAT_BIT_LENGTH);
+                // Euler's criterion
+                BigInteger legendre = num.modPow(mod.subtract(BigInteger.valueOf(1)).divide(BigInteger.valueOf(2)), mod);
+                int expected = legendre.equals(BigInteger.ONE) ? 1 : legendre.equals(BigInteger.ZERO) ? 0 : -1;
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_JACOBI, Util.trimLeadingZeroes(num.toByteArray()).length, 0, Util.concat(Util.trimLeadingZeroes(num.toByteArray()), Util.trimLeadingZeroes(mod.toByteArray())));
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatJacobi/INS_BN_JACOBI", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(expected, resp.getData()[0]);
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatModAdd() throws Exception {
             perfMap.put("bigNatModAdd/INS_BN_ADD_MOD", new Long(-1));
@@ -497,6 +854,81 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatMontMult() throws Exception {
+            perfMap.put("bigNatMontMult/INS_BN_MUL_MONT", new Long(-1));
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+            BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+            BigInteger result = (num1.multiply(num2)).mod(mod);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_MUL_MONT, Util.trimLeadingZeroes(num1.toByteArray()).length, 0, Util.concat(Util.trimLeadingZeroes(num1.toByteArray()), Util.trimLeadingZeroes(num2.toByteArray())));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatMontMult/INS_BN_MUL_MONT", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatModMultAdd() throws Exception {
+            perfMap.put("bigNatModMultAdd/INS_BN_MUL_ADD_MOD", new Long(-1));
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            for (int i = 0; i < 4; ++i) {
+                BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger num3 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger result = (num1.multiply(num2)).add(num3).mod(mod);
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_MUL_ADD_MOD, Util.trimLeadingZeroes(num1.toByteArray()).length, Util.trimLeadingZeroes(num2.toByteArray()).length, Util.concat(Util.trimLeadingZeroes(num1.toByteArray()), Util.trimLeadingZeroes(num2.toByteArray()), Util.trimLeadingZeroes(num3.toByteArray())));
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatModMultAdd/INS_BN_MUL_ADD_MOD", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatModMultSub() throws Exception {
+            perfMap.put("bigNatModMultSub/INS_BN_MUL_SUB_MOD", new Long(-1));
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            for (int i = 0; i < 4; ++i) {
+                BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger num3 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger result = (num1.multiply(num2)).subtract(num3).mod(mod);
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_MUL_SUB_MOD, Util.trimLeadingZeroes(num1.toByteArray()).length, Util.trimLeadingZeroes(num2.toByteArray()).length, Util.concat(Util.trimLeadingZeroes(num1.toByteArray()), Util.trimLeadingZeroes(num2.toByteArray()), Util.trimLeadingZeroes(num3.toByteArray())));
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatModMultSub/INS_BN_MUL_SUB_MOD", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void fieldElementChain() throws Exception {
+            perfMap.put("fieldElementChain/INS_FE_CHAIN", new Long(-1));
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            int[] counts = {0, 3, 200};
+            for (int count : counts) {
+                BigInteger num1 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger num2 = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                BigInteger n = BigInteger.valueOf(count);
+                BigInteger diff = num2.subtract(n.multiply(num1));
+                BigInteger result = num1.add(n.multiply(num2)).multiply(diff).subtract(num1).multiply(num2).add(diff).mod(mod);
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_FE_CHAIN, Util.trimLeadingZeroes(num1.toByteArray()).length, count, Util.concat(Util.trimLeadingZeroes(num1.toByteArray()), Util.trimLeadingZeroes(num2.toByteArray())));
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("fieldElementChain/INS_FE_CHAIN", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatModExp() throws Exception {
             perfMap.put("bigNatModExp/INS_BN_EXP_MOD", new Long(-1));
@@ -516,6 +948,47 @@ public class JCMathLibTest extends BaseTest {
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
 
+        @Test
+        public void bigNatModExpCache() throws Exception {
+            perfMap.put("bigNatModExpCache/INS_BN_EXP_MOD", new Long(-1));
+            // Alternate moduli and exponents to check cached RSA engines are reused only for matching values
+            BigInteger[] mods = {new BigInteger(1, CURVE_P), new BigInteger(1, CURVE_R)};
+            BigInteger[] exps = {randomBigNat(BIGNAT_BIT_LENGTH), randomBigNat(BIGNAT_BIT_LENGTH)};
+            for (int i = 0; i < 8; ++i) {
+                BigInteger base = randomBigNat(BIGNAT_BIT_LENGTH);
+                BigInteger exp = exps[(i / 2) % 2];
+                BigInteger mod = mods[i % 2];
+                BigInteger result = (base.modPow(exp, mod));
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_EXP_MOD, Util.trimLeadingZeroes(base.toByteArray()).length, Util.trimLeadingZeroes(exp.toByteArray()).length, Util.concat(Util.trimLeadingZeroes(base.toByteArray()), Util.trimLeadingZeroes(exp.toByteArray()), Util.trimLeadingZeroes(mod.toByteArray())));
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatModExpCache/INS_BN_EXP_MOD", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatModExpWindow() throws Exception {
+            perfMap.put("bigNatModExpWindow/INS_BN_EXP_MOD_WINDOW", new Long(-1));
+            // Test short and long exponents (different window widths)
+            int[] expBitLengths = {8, 64, BIGNAT_BIT_LENGTH};
+            for (int expBitLength : expBitLengths) {
+                BigInteger base = randomBigNat(BIGNAT_BIT_LENGTH);
+                BigInteger exp = randomBigNat(expBitLength);
+                BigInteger mod = new BigInteger(1, CURVE_P);
+                BigInteger result = (base.modPow(exp, mod));
+                CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_EXP_MOD_WINDOW, Util.trimLeadingZeroes(base.toByteArray()).length, Util.trimLeadingZeroes(exp.toByteArray()).length, Util.concat(Util.trimLeadingZeroes(base.toByteArray()), Util.trimLeadingZeroes(exp.toByteArray()), Util.trimLeadingZeroes(mod.toByteArray())));
+                ResponseAPDU resp = statefulCard.transmit(cmd);
+                perfMap.put("bigNatModExpWindow/INS_BN_EXP_MOD_WINDOW", statefulCard.getLastTransmitTime());
+
+                Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+                Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
         @Test
         public void bigNatModSq() throws Exception {
             perfMap.put("bigNatModSq/INS_BN_SQ_MOD", new Long(-1));
@@ -546,6 +1019,44 @@ public class JCMathLibTest extends BaseTest {
             Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
             statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
         }
+
+        @Test
+        public void bigNatModInvBinary() throws Exception {
+            perfMap.put("bigNatModInvBinary/INS_BN_INV_MOD_BINARY", new Long(-1));
+            BigInteger base = randomBigNat(BIGNAT_BIT_LENGTH);
+            BigInteger mod = new BigInteger(1, CURVE_R);
+            BigInteger result = base.modInverse(mod);
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_INV_MOD_BINARY, Util.trimLeadingZeroes(base.toByteArray()).length, 0, Util.concat(Util.trimLeadingZeroes(base.toByteArray()), Util.trimLeadingZeroes(mod.toByteArray())));
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatModInvBinary/INS_BN_INV_MOD_BINARY", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            Assertions.assertEquals(result, new BigInteger(1, resp.getData()));
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
+
+        @Test
+        public void bigNatModInvBatch() throws Exception {
+            perfMap.put("bigNatModInvBatch/INS_BN_INV_MOD_BATCH", new Long(-1));
+            BigInteger mod = new BigInteger(1, CURVE_P);
+            int coordSize = CURVE_P.length;
+            byte[] data = new byte[UnitTests.BATCH_SIZE * coordSize];
+            BigInteger[] values = new BigInteger[UnitTests.BATCH_SIZE];
+            for (int i = 0; i < UnitTests.BATCH_SIZE; ++i) {
+                values[i] = randomBigNat(BIGNAT_BIT_LENGTH).mod(mod);
+                System.arraycopy(BigIntegers.asUnsignedByteArray(coordSize, values[i]), 0, data, i * coordSize, coordSize);
+            }
+            CommandAPDU cmd = new CommandAPDU(UnitTests.CLA_OC_UT, UnitTests.INS_BN_INV_MOD_BATCH, UnitTests.BATCH_SIZE, 0, data);
+            ResponseAPDU resp = statefulCard.transmit(cmd);
+            perfMap.put("bigNatModInvBatch/INS_BN_INV_MOD_BATCH", statefulCard.getLastTransmitTime());
+
+            Assertions.assertEquals(ISO7816.SW_NO_ERROR & 0xffff, resp.getSW());
+            for (int i = 0; i < UnitTests.BATCH_SIZE; ++i) {
+                BigInteger result = new BigInteger(1, Arrays.copyOfRange(resp.getData(), i * coordSize, (i + 1) * coordSize));
+                Assertions.assertEquals(values[i].modInverse(mod), result);
+            }
+            statefulCard.transmit(new CommandAPDU(APDU_CLEANUP));
+        }
     }
 
     @Nested